@@ -0,0 +1,90 @@
+package fr.upem.net.tcp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sums a request of operands longs, read in chunks of the buffer of
+ * {@link LongSumRequestEngine}, one getLong at a time as the servers used to do and in
+ * bulk with the scalar and the Vector API reductions. The network is left out: the
+ * chunks are already in the buffer.
+ * <p>
+ * Built by bench/tp10 with the TP10 sources and the vector directory, run with
+ * {@code java -jar bench/tp10/target/benchmarks.jar LongSumBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class LongSumBenchmark {
+
+    private static final int BUFFER_SIZE = LongSumRequestEngine.BUFFER_SIZE;
+    private static final int CHUNK = BUFFER_SIZE / Long.BYTES;
+
+    @Param({"1000000"})
+    private int operands;
+
+    @Param({"true", "false"})
+    private boolean direct;
+
+    private ByteBuffer buffer;
+    private LongSumRequestEngine.Reducer vector;
+
+    @Setup
+    public void setup() {
+        buffer = direct ? ByteBuffer.allocateDirect(BUFFER_SIZE) : ByteBuffer.allocate(BUFFER_SIZE);
+        for (var i = 0; buffer.hasRemaining(); i++) {
+            buffer.putLong(i * 31L);
+        }
+        vector = LongSumRequestEngine.vectorReducer();
+    }
+
+    @Benchmark
+    public long perLong() {
+        long sum = 0;
+        for (long remaining = operands; remaining > 0; ) {
+            var count = (int) Math.min(remaining, CHUNK);
+            buffer.clear().limit(count * Long.BYTES);
+            for (var i = 0; i < count; i++) {
+                sum += buffer.getLong();
+            }
+            remaining -= count;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long bulkScalar() {
+        return bulk(LongSumRequestEngine.SCALAR);
+    }
+
+    @Benchmark
+    public long bulkVector() {
+        return bulk(vector);
+    }
+
+    private long bulk(LongSumRequestEngine.Reducer reducer) {
+        long sum = 0;
+        for (long remaining = operands; remaining > 0; ) {
+            var count = (int) Math.min(remaining, CHUNK);
+            buffer.clear().limit(count * Long.BYTES);
+            sum += reducer.sum(buffer, count);
+            remaining -= count;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,74 @@
+package fr.upem.net.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Allocator decorator remembering where each buffer not yet released was allocated.
+ * <p>
+ * Releasing a buffer twice, or a buffer which does not come from this allocator,
+ * throws an IllegalArgumentException instead of corrupting the delegate.
+ */
+public final class LeakTrackingBufferAllocator implements BufferAllocator {
+
+    private final BufferAllocator delegate;
+    // ByteBuffer.equals compares the content, buffers must be tracked by identity
+    private final Map<ByteBuffer, Throwable> outstanding = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    public LeakTrackingBufferAllocator(BufferAllocator delegate) {
+        this.delegate = Objects.requireNonNull(delegate);
+    }
+
+    @Override
+    public ByteBuffer allocate(int size) {
+        var buffer = delegate.allocate(size);
+        outstanding.put(buffer, new Throwable("Buffer of " + size + " bytes allocated by "
+                + Thread.currentThread().getName()));
+        return buffer;
+    }
+
+    @Override
+    public void release(ByteBuffer buffer) {
+        if (outstanding.remove(Objects.requireNonNull(buffer)) == null) {
+            throw new IllegalArgumentException("Buffer released twice or not allocated by this allocator");
+        }
+        delegate.release(buffer);
+    }
+
+    /**
+     * @return the number of buffers allocated and not yet released
+     */
+    public int outstandingBuffers() {
+        return outstanding.size();
+    }
+
+    /**
+     * @return the allocation sites of the buffers not yet released
+     */
+    public List<Throwable> leaks() {
+        synchronized (outstanding) {
+            return new ArrayList<>(outstanding.values());
+        }
+    }
+
+    /**
+     * Logs a warning with the allocation site of each buffer not yet released
+     */
+    public void reportLeaks(Logger logger) {
+        var leaks = leaks();
+        if (leaks.isEmpty()) {
+            return;
+        }
+        logger.warning(leaks.size() + " buffers were never released");
+        for (var leak : leaks) {
+            logger.log(Level.WARNING, "Leaked buffer", leak);
+        }
+    }
+}
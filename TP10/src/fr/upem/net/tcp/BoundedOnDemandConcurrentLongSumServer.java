@@ -1,9 +1,10 @@
 package fr.upem.net.tcp;
 
+import fr.upem.net.buffer.BufferAllocator;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.concurrent.Semaphore;
@@ -13,12 +14,17 @@ import java.util.logging.Logger;
 public class BoundedOnDemandConcurrentLongSumServer {
 
     private static final Logger logger = Logger.getLogger(BoundedOnDemandConcurrentLongSumServer.class.getName());
-    private static final int BUFFER_SIZE = 1024;
 
     private final Semaphore semaphore;
     private final ServerSocketChannel serverSocketChannel;
+    private final LongSumRequestEngine engine;
 
     public BoundedOnDemandConcurrentLongSumServer(int port, int limit) throws IOException {
+        this(port, limit, BufferAllocator.heap());
+    }
+
+    public BoundedOnDemandConcurrentLongSumServer(int port, int limit, BufferAllocator allocator) throws IOException {
+        engine = new LongSumRequestEngine(allocator);
         semaphore = new Semaphore(limit);
         serverSocketChannel = ServerSocketChannel.open();
         serverSocketChannel.bind(new InetSocketAddress(port));
@@ -38,7 +44,7 @@ public class BoundedOnDemandConcurrentLongSumServer {
             var thread = new Thread(() -> {
                 try {
                     logger.info("Connection accepted from " + client.getRemoteAddress());
-                    serve(client);
+                    engine.serve(client);
                 } catch (IOException ioe) {
                     logger.log(Level.SEVERE, "Connection terminated with client by IOException", ioe.getCause());
                 } finally {
@@ -51,51 +57,6 @@ public class BoundedOnDemandConcurrentLongSumServer {
         }
     }
 
-    /**
-     * Treat the connection sc applying the protocol. All IOException are thrown
-     *
-     * @param sc
-     * @throws IOException
-     */
-    private void serve(SocketChannel sc) throws IOException {
-        while (sc.isOpen()) {
-            var preamble = ByteBuffer.allocate(Integer.BYTES);
-            if (!readFully(sc, preamble)) {
-                return;
-            }
-            preamble.flip();
-
-            if (preamble.remaining() < Integer.BYTES) {
-                logger.warning("Malformed packet");
-                return;
-            }
-
-            long sum = 0;
-            var operations = preamble.getInt();
-
-            var buffer = ByteBuffer.allocate(Math.min(operations * Long.BYTES, BUFFER_SIZE));
-            buffer.flip();
-
-            for (int i = 0; i < operations; i++) {
-                if (!buffer.hasRemaining()) {
-                    buffer.clear();
-                    if (!readFully(sc, buffer)) {
-                        return;
-                    }
-                    buffer.flip();
-                }
-                if (buffer.remaining() < Long.BYTES) {
-                    logger.warning("Malformed packet");
-                    buffer.clear();
-                }
-                sum += buffer.getLong();
-            }
-
-            buffer.clear();
-            buffer.putLong(sum);
-            sc.write(buffer.flip());
-        }
-    }
 
     /**
      * Close a SocketChannel while ignoring IOExecption
@@ -113,20 +74,10 @@ public class BoundedOnDemandConcurrentLongSumServer {
         }
     }
 
-    static boolean readFully(SocketChannel sc, ByteBuffer buffer) throws IOException {
-        while (buffer.hasRemaining()) {
-            if (sc.read(buffer) == -1) {
-                logger.info("Input stream closed");
-                return false;
-            }
-        }
-        return true;
-    }
-
     public static void main(String[] args) throws NumberFormatException, IOException, InterruptedException {
         var port = Integer.parseInt(args[0]);
         var limit = Integer.parseInt(args[1]);
-        var server = new BoundedOnDemandConcurrentLongSumServer(port, limit);
+        var server = new BoundedOnDemandConcurrentLongSumServer(port, limit, BufferAllocator.fromSystemProperties());
         server.launch();
     }
 }
\ No newline at end of file
@@ -1,10 +1,11 @@
 package fr.upem.net.tcp;
 
+import fr.upem.net.buffer.BufferAllocator;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousCloseException;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.ClosedChannelException;
@@ -18,11 +19,16 @@ import java.util.logging.Logger;
 public class FixedPrestartedConcurrentLongSumServerWithTimeout {
 
     private static final Logger logger = Logger.getLogger(FixedPrestartedConcurrentLongSumServerWithTimeout.class.getName());
-    private static final int BUFFER_SIZE = 1024;
 
     private final ServerSocketChannel serverSocketChannel;
+    private final LongSumRequestEngine engine;
 
     public FixedPrestartedConcurrentLongSumServerWithTimeout(int port) throws IOException {
+        this(port, BufferAllocator.heap());
+    }
+
+    public FixedPrestartedConcurrentLongSumServerWithTimeout(int port, BufferAllocator allocator) throws IOException {
+        engine = new LongSumRequestEngine(allocator);
         serverSocketChannel = ServerSocketChannel.open();
         serverSocketChannel.bind(new InetSocketAddress(port));
         logger.info(this.getClass().getName() + " starts on port " + port);
@@ -41,7 +47,7 @@ public class FixedPrestartedConcurrentLongSumServerWithTimeout {
             data.setSocketChannel(client);
             try {
                 logger.info("Connection accepted from " + address);
-                serve(client, data);
+                engine.serve(client, data::tick);
             } catch (ClosedByInterruptException e) {
                 logger.info("Connection with " + address + " closed");
             } catch (AsynchronousCloseException e) {
@@ -54,54 +60,6 @@ public class FixedPrestartedConcurrentLongSumServerWithTimeout {
         }
     }
 
-    /**
-     * Treat the connection sc applying the protocol. All IOException are thrown
-     *
-     * @param sc
-     * @throws IOException
-     */
-    private void serve(SocketChannel sc, ThreadData data) throws IOException {
-        while (sc.isOpen()) {
-            var preamble = ByteBuffer.allocate(Integer.BYTES);
-            if (!readFully(sc, preamble)) {
-                return;
-            }
-            data.tick();
-            preamble.flip();
-
-            if (preamble.remaining() < Integer.BYTES) {
-                logger.warning("Malformed packet");
-                return;
-            }
-
-            long sum = 0;
-            var operations = preamble.getInt();
-
-            var buffer = ByteBuffer.allocate(Math.min(operations * Long.BYTES, BUFFER_SIZE));
-            buffer.flip();
-
-            for (int i = 0; i < operations; i++) {
-                if (!buffer.hasRemaining()) {
-                    buffer.clear();
-                    if (!readFully(sc, buffer)) {
-                        return;
-                    }
-                    data.tick();
-                    buffer.flip();
-                }
-                if (buffer.remaining() < Long.BYTES) {
-                    logger.warning("Malformed packet");
-                    buffer.clear();
-                }
-                sum += buffer.getLong();
-            }
-
-            buffer.clear();
-            buffer.putLong(sum);
-            sc.write(buffer.flip());
-            data.tick();
-        }
-    }
 
     /**
      * Close a SocketChannel while ignoring IOExecption
@@ -118,18 +76,8 @@ public class FixedPrestartedConcurrentLongSumServerWithTimeout {
         }
     }
 
-    static boolean readFully(SocketChannel sc, ByteBuffer buffer) throws IOException {
-        while (buffer.hasRemaining()) {
-            if (sc.read(buffer) == -1) {
-                logger.info("Input stream closed");
-                return false;
-            }
-        }
-        return true;
-    }
-
     public static void main(String[] args) throws NumberFormatException, IOException {
-        var server = new FixedPrestartedConcurrentLongSumServerWithTimeout(Integer.parseInt(args[0]));
+        var server = new FixedPrestartedConcurrentLongSumServerWithTimeout(Integer.parseInt(args[0]), BufferAllocator.fromSystemProperties());
         var threads = new ArrayList<Thread>();
         var threadDatas = new ArrayList<ThreadData>();
         var timeout = Integer.parseInt(args[2]);
@@ -1,9 +1,10 @@
 package fr.upem.net.tcp;
 
+import fr.upem.net.buffer.BufferAllocator;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
@@ -13,11 +14,16 @@ import java.util.logging.Logger;
 public class FixedPrestartedLongSumServer {
 
     private static final Logger logger = Logger.getLogger(FixedPrestartedLongSumServer.class.getName());
-    private static final int BUFFER_SIZE = 1024;
 
     private final ServerSocketChannel serverSocketChannel;
+    private final LongSumRequestEngine engine;
 
     public FixedPrestartedLongSumServer(int port) throws IOException {
+        this(port, BufferAllocator.heap());
+    }
+
+    public FixedPrestartedLongSumServer(int port, BufferAllocator allocator) throws IOException {
+        engine = new LongSumRequestEngine(allocator);
         serverSocketChannel = ServerSocketChannel.open();
         serverSocketChannel.bind(new InetSocketAddress(port));
         logger.info(this.getClass().getName() + " starts on port " + port);
@@ -34,7 +40,7 @@ public class FixedPrestartedLongSumServer {
             SocketChannel client = serverSocketChannel.accept();
             try {
                 logger.info("Connection accepted from " + client.getRemoteAddress());
-                serve(client);
+                engine.serve(client);
             } catch (IOException ioe) {
                 logger.log(Level.INFO, "Connection terminated with client by IOException", ioe.getCause());
             } finally {
@@ -43,51 +49,6 @@ public class FixedPrestartedLongSumServer {
         }
     }
 
-    /**
-     * Treat the connection sc applying the protocol. All IOException are thrown
-     *
-     * @param sc
-     * @throws IOException
-     */
-    private void serve(SocketChannel sc) throws IOException {
-        while (sc.isOpen()) {
-            var preamble = ByteBuffer.allocate(Integer.BYTES);
-            if (!readFully(sc, preamble)) {
-                return;
-            }
-            preamble.flip();
-
-            if (preamble.remaining() < Integer.BYTES) {
-                logger.warning("Malformed packet");
-                return;
-            }
-
-            long sum = 0;
-            var operations = preamble.getInt();
-
-            var buffer = ByteBuffer.allocate(Math.min(operations * Long.BYTES, BUFFER_SIZE));
-            buffer.flip();
-
-            for (int i = 0; i < operations; i++) {
-                if (!buffer.hasRemaining()) {
-                    buffer.clear();
-                    if (!readFully(sc, buffer)) {
-                        return;
-                    }
-                    buffer.flip();
-                }
-                if (buffer.remaining() < Long.BYTES) {
-                    logger.warning("Malformed packet");
-                    buffer.clear();
-                }
-                sum += buffer.getLong();
-            }
-
-            buffer.clear();
-            buffer.putLong(sum);
-            sc.write(buffer.flip());
-        }
-    }
 
     /**
      * Close a SocketChannel while ignoring IOExecption
@@ -105,18 +66,8 @@ public class FixedPrestartedLongSumServer {
         }
     }
 
-    static boolean readFully(SocketChannel sc, ByteBuffer buffer) throws IOException {
-        while (buffer.hasRemaining()) {
-            if (sc.read(buffer) == -1) {
-                logger.info("Input stream closed");
-                return false;
-            }
-        }
-        return true;
-    }
-
     public static void main(String[] args) throws NumberFormatException, IOException, InterruptedException {
-        var server = new FixedPrestartedLongSumServer(Integer.parseInt(args[0]));
+        var server = new FixedPrestartedLongSumServer(Integer.parseInt(args[0]), BufferAllocator.fromSystemProperties());
         var threads = new ArrayList<Thread>();
 
         for (int i = 0; i < Integer.parseInt(args[1]); i++) {
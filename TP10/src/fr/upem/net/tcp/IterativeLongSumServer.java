@@ -1,9 +1,10 @@
 package fr.upem.net.tcp;
 
+import fr.upem.net.buffer.BufferAllocator;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.logging.Level;
@@ -12,11 +13,16 @@ import java.util.logging.Logger;
 public class IterativeLongSumServer {
 
     private static final Logger logger = Logger.getLogger(IterativeLongSumServer.class.getName());
-    private static final int BUFFER_SIZE = 1024;
 
     private final ServerSocketChannel serverSocketChannel;
+    private final LongSumRequestEngine engine;
 
     public IterativeLongSumServer(int port) throws IOException {
+        this(port, BufferAllocator.heap());
+    }
+
+    public IterativeLongSumServer(int port, BufferAllocator allocator) throws IOException {
+        engine = new LongSumRequestEngine(allocator);
         serverSocketChannel = ServerSocketChannel.open();
         serverSocketChannel.bind(new InetSocketAddress(port));
         logger.info(this.getClass().getName() + " starts on port " + port);
@@ -33,7 +39,7 @@ public class IterativeLongSumServer {
             SocketChannel client = serverSocketChannel.accept();
             try {
                 logger.info("Connection accepted from " + client.getRemoteAddress());
-                serve(client);
+                engine.serve(client);
             } catch (IOException ioe) {
                 logger.log(Level.SEVERE, "Connection terminated with client by IOException", ioe.getCause());
             } finally {
@@ -42,51 +48,6 @@ public class IterativeLongSumServer {
         }
     }
 
-    /**
-     * Treat the connection sc applying the protocol. All IOException are thrown
-     *
-     * @param sc
-     * @throws IOException
-     */
-    private void serve(SocketChannel sc) throws IOException {
-        while (sc.isOpen()) {
-            var preamble = ByteBuffer.allocate(Integer.BYTES);
-            if (!readFully(sc, preamble)) {
-                return;
-            }
-            preamble.flip();
-
-            if (preamble.remaining() < Integer.BYTES) {
-                logger.warning("Malformed packet");
-                return;
-            }
-
-            long sum = 0;
-            var operations = preamble.getInt();
-
-            var buffer = ByteBuffer.allocate(Math.min(operations * Long.BYTES, BUFFER_SIZE));
-            buffer.flip();
-
-            for (int i = 0; i < operations; i++) {
-                if (!buffer.hasRemaining()) {
-                    buffer.clear();
-                    if (!readFully(sc, buffer)) {
-                        return;
-                    }
-                    buffer.flip();
-                }
-                if (buffer.remaining() < Long.BYTES) {
-                    logger.warning("Malformed packet");
-                    buffer.clear();
-                }
-                sum += buffer.getLong();
-            }
-
-            buffer.clear();
-            buffer.putLong(sum);
-            sc.write(buffer.flip());
-        }
-    }
 
     /**
      * Close a SocketChannel while ignoring IOExecption
@@ -104,18 +65,8 @@ public class IterativeLongSumServer {
         }
     }
 
-    static boolean readFully(SocketChannel sc, ByteBuffer buffer) throws IOException {
-        while (buffer.hasRemaining()) {
-            if (sc.read(buffer) == -1) {
-                logger.info("Input stream closed");
-                return false;
-            }
-        }
-        return true;
-    }
-
     public static void main(String[] args) throws NumberFormatException, IOException {
-        var server = new IterativeLongSumServer(Integer.parseInt(args[0]));
+        var server = new IterativeLongSumServer(Integer.parseInt(args[0]), BufferAllocator.fromSystemProperties());
         server.launch();
     }
 }
\ No newline at end of file
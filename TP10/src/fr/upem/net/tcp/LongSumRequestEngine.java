@@ -0,0 +1,131 @@
+package fr.upem.net.tcp;
+
+import fr.upem.net.buffer.BufferAllocator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Blocking implementation of the LongSum protocol shared by the servers: each request
+ * is an int giving the number of operands followed by the operands as longs, the
+ * answer is their sum as a long.
+ * <p>
+ * A connection gets a single buffer for all its requests. The operands are read in
+ * chunks of the size of the buffer, whatever the size of the request, and each chunk
+ * is reduced at once with absolute reads, a loop the JIT vectorizes, instead of one
+ * relative getLong per operand. It uses the Vector API when the
+ * {@value #VECTOR_PROPERTY} system property is true and the classes of the vector
+ * directory are on the class path, running with --add-modules jdk.incubator.vector.
+ */
+public final class LongSumRequestEngine {
+
+    /**
+     * Sum of the first count longs of a buffer, whatever its position, its limit must be
+     * at least count longs
+     */
+    @FunctionalInterface
+    interface Reducer {
+        long sum(ByteBuffer buffer, int count);
+    }
+
+    static final Reducer SCALAR = (buffer, count) -> {
+        long sum = 0;
+        for (var i = 0; i < count * Long.BYTES; i += Long.BYTES) {
+            sum += buffer.getLong(i);
+        }
+        return sum;
+    };
+
+    /**
+     * System property enabling the Vector API reduction
+     */
+    public static final String VECTOR_PROPERTY = "fr.upem.net.longsum.vector";
+
+    private static final Logger logger = Logger.getLogger(LongSumRequestEngine.class.getName());
+    private static final String VECTOR_REDUCER = "fr.upem.net.tcp.VectorReducer";
+    static final int BUFFER_SIZE = 8 * 1024;
+
+    private final BufferAllocator allocator;
+    private final Reducer reducer;
+
+    public LongSumRequestEngine(BufferAllocator allocator) {
+        this(allocator, Boolean.getBoolean(VECTOR_PROPERTY) ? vectorReducer() : SCALAR);
+    }
+
+    LongSumRequestEngine(BufferAllocator allocator, Reducer reducer) {
+        this.allocator = Objects.requireNonNull(allocator);
+        this.reducer = Objects.requireNonNull(reducer);
+    }
+
+    /**
+     * @return the Vector API reducer, or the scalar one if it is not available
+     */
+    static Reducer vectorReducer() {
+        try {
+            return (Reducer) Class.forName(VECTOR_REDUCER).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.log(Level.WARNING, "Vector API not available, using the scalar reduction", e);
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Treat the connection sc applying the protocol until the client closes it. All
+     * IOException are thrown
+     */
+    public void serve(SocketChannel sc) throws IOException {
+        serve(sc, () -> {});
+    }
+
+    /**
+     * Treat the connection sc applying the protocol until the client closes it. All
+     * IOException are thrown
+     *
+     * @param onProgress called each time bytes were read or written
+     */
+    public void serve(SocketChannel sc, Runnable onProgress) throws IOException {
+        var buffer = allocator.allocate(BUFFER_SIZE);
+        try {
+            while (sc.isOpen()) {
+                buffer.clear().limit(Integer.BYTES);
+                if (!readFully(sc, buffer)) {
+                    return;
+                }
+                onProgress.run();
+                long remaining = buffer.flip().getInt();
+                long sum = 0;
+                while (remaining > 0) {
+                    var count = (int) Math.min(remaining, BUFFER_SIZE / Long.BYTES);
+                    buffer.clear().limit(count * Long.BYTES);
+                    if (!readFully(sc, buffer)) {
+                        return;
+                    }
+                    onProgress.run();
+                    sum += reducer.sum(buffer, count);
+                    remaining -= count;
+                }
+                buffer.clear().putLong(sum).flip();
+                while (buffer.hasRemaining()) {
+                    sc.write(buffer);
+                }
+                onProgress.run();
+            }
+        } finally {
+            allocator.release(buffer);
+        }
+    }
+
+    private static boolean readFully(SocketChannel sc, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (sc.read(buffer) == -1) {
+                logger.info("Input stream closed");
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,10 +1,11 @@
 package fr.upem.net.tcp;
 
+import fr.upem.net.buffer.BufferAllocator;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.logging.Level;
@@ -13,11 +14,16 @@ import java.util.logging.Logger;
 public class OnDemandConcurrentLongSumServer {
 
     private static final Logger logger = Logger.getLogger(OnDemandConcurrentLongSumServer.class.getName());
-    private static final int BUFFER_SIZE = 1024;
 
     private final ServerSocketChannel serverSocketChannel;
+    private final LongSumRequestEngine engine;
 
     public OnDemandConcurrentLongSumServer(int port) throws IOException {
+        this(port, BufferAllocator.heap());
+    }
+
+    public OnDemandConcurrentLongSumServer(int port, BufferAllocator allocator) throws IOException {
+        engine = new LongSumRequestEngine(allocator);
         serverSocketChannel = ServerSocketChannel.open();
         serverSocketChannel.bind(new InetSocketAddress(port));
         logger.info(this.getClass().getName() + " starts on port " + port);
@@ -35,7 +41,7 @@ public class OnDemandConcurrentLongSumServer {
             var thread = new Thread(() -> {
                 try {
                     logger.info("Connection accepted from " + client.getRemoteAddress());
-                    serve(client);
+                    engine.serve(client);
                 } catch (IOException ioe) {
                     logger.log(Level.SEVERE, "Connection terminated with client by IOException", ioe.getCause());
                 } finally {
@@ -47,51 +53,6 @@ public class OnDemandConcurrentLongSumServer {
         }
     }
 
-    /**
-     * Treat the connection sc applying the protocol. All IOException are thrown
-     *
-     * @param sc
-     * @throws IOException
-     */
-    private void serve(SocketChannel sc) throws IOException {
-        while (sc.isOpen()) {
-            var preamble = ByteBuffer.allocate(Integer.BYTES);
-            if (!readFully(sc, preamble)) {
-                return;
-            }
-            preamble.flip();
-
-            if (preamble.remaining() < Integer.BYTES) {
-                logger.warning("Malformed packet");
-                return;
-            }
-
-            long sum = 0;
-            var operations = preamble.getInt();
-
-            var buffer = ByteBuffer.allocate(Math.min(operations * Long.BYTES, BUFFER_SIZE));
-            buffer.flip();
-
-            for (int i = 0; i < operations; i++) {
-                if (!buffer.hasRemaining()) {
-                    buffer.clear();
-                    if (!readFully(sc, buffer)) {
-                        return;
-                    }
-                    buffer.flip();
-                }
-                if (buffer.remaining() < Long.BYTES) {
-                    logger.warning("Malformed packet");
-                    buffer.clear();
-                }
-                sum += buffer.getLong();
-            }
-
-            buffer.clear();
-            buffer.putLong(sum);
-            sc.write(buffer.flip());
-        }
-    }
 
     /**
      * Close a SocketChannel while ignoring IOExecption
@@ -109,18 +70,8 @@ public class OnDemandConcurrentLongSumServer {
         }
     }
 
-    static boolean readFully(SocketChannel sc, ByteBuffer buffer) throws IOException {
-        while (buffer.hasRemaining()) {
-            if (sc.read(buffer) == -1) {
-                logger.info("Input stream closed");
-                return false;
-            }
-        }
-        return true;
-    }
-
     public static void main(String[] args) throws NumberFormatException, IOException {
-        var server = new OnDemandConcurrentLongSumServer(Integer.parseInt(args[0]));
+        var server = new OnDemandConcurrentLongSumServer(Integer.parseInt(args[0]), BufferAllocator.fromSystemProperties());
         server.launch();
     }
 }
\ No newline at end of file
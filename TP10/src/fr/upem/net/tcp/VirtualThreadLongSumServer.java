@@ -0,0 +1,200 @@
+package fr.upem.net.tcp;
+
+import fr.upem.net.buffer.BufferAllocator;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * LongSum server serving each client on its own virtual thread.
+ * <p>
+ * A client blocked in a read only costs a few hundred bytes of stack and its buffer,
+ * so tens of thousands of mostly idle clients do not need as many OS threads. The
+ * number of clients served at once is still capped: once the cap is reached, the
+ * server stops accepting until a client leaves.
+ */
+public class VirtualThreadLongSumServer {
+
+    private static final Logger logger = Logger.getLogger(VirtualThreadLongSumServer.class.getName());
+    private static final int DEFAULT_MAX_CLIENTS = 10_000;
+    private static final long SHUTDOWN_CHECK_MILLIS = 100;
+
+    private final ServerSocketChannel serverSocketChannel;
+    private final LongSumRequestEngine engine;
+    private final int maxClients;
+    private final Semaphore semaphore;
+    private final Set<SocketChannel> clients = ConcurrentHashMap.newKeySet();
+    private final Thread.Builder clientThreads = Thread.ofVirtual().name("client-", 0);
+    private volatile boolean closingClients = false;
+
+    public VirtualThreadLongSumServer(int port) throws IOException {
+        this(port, DEFAULT_MAX_CLIENTS, BufferAllocator.heap());
+    }
+
+    public VirtualThreadLongSumServer(int port, int maxClients, BufferAllocator allocator) throws IOException {
+        if (maxClients <= 0) {
+            throw new IllegalArgumentException("The maximum number of clients must be positive");
+        }
+        engine = new LongSumRequestEngine(allocator);
+        this.maxClients = maxClients;
+        semaphore = new Semaphore(maxClients);
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress(port));
+        logger.info(this.getClass().getName() + " starts on port " + port + " with " + maxClients + " clients max");
+    }
+
+    /**
+     * Accepts clients until the server is shut down, serving each of them on a new
+     * virtual thread, then waits for the clients already connected to leave
+     *
+     * @throws IOException
+     */
+    public void launch() throws IOException, InterruptedException {
+        logger.info("Server started");
+        try {
+            while (!Thread.interrupted() && awaitFreeSlot()) {
+                SocketChannel client;
+                try {
+                    client = serverSocketChannel.accept();
+                } catch (IOException e) {
+                    semaphore.release();
+                    throw e;
+                }
+                clients.add(client);
+                if (closingClients) {
+                    // shutdownNow may have closed the clients before this one was added
+                    silentlyClose(client);
+                }
+                clientThreads.start(() -> {
+                    try {
+                        logger.info("Connection accepted from " + client.getRemoteAddress());
+                        engine.serve(client);
+                    } catch (AsynchronousCloseException e) {
+                        logger.info("Connection closed by the server");
+                    } catch (IOException ioe) {
+                        logger.log(Level.INFO, "Connection terminated with client by IOException", ioe.getCause());
+                    } finally {
+                        clients.remove(client);
+                        silentlyClose(client);
+                        semaphore.release();
+                    }
+                });
+            }
+        } catch (ClosedChannelException e) {
+            // closed during accept or before it, in both cases the clients are drained
+        }
+        logger.info("Server stopped accepting clients");
+        // virtual threads do not keep the JVM alive, wait for the clients to leave
+        semaphore.acquire(maxClients);
+        logger.info("Server stopped");
+    }
+
+    /**
+     * Takes a permit of the semaphore, waiting for a client to leave if the server is
+     * full, but checking regularly that the server was not shut down meanwhile
+     *
+     * @return false if the server was shut down before a permit was available
+     */
+    private boolean awaitFreeSlot() throws InterruptedException {
+        while (!semaphore.tryAcquire(SHUTDOWN_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (!serverSocketChannel.isOpen()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting clients, the clients already connected are served until they leave
+     */
+    public void shutdown() {
+        silentlyClose(serverSocketChannel);
+    }
+
+    /**
+     * Stops accepting clients and closes the connection of every client
+     */
+    public void shutdownNow() {
+        shutdown();
+        closingClients = true;
+        for (var client : clients) {
+            silentlyClose(client);
+        }
+    }
+
+    /**
+     * @return the number of clients currently served
+     */
+    public int connectedClients() {
+        return clients.size();
+    }
+
+    /**
+     * Reads commands on the standard input: INFO, SHUTDOWN or SHUTDOWNNOW
+     */
+    private void consoleRun() {
+        try (var scanner = new Scanner(System.in)) {
+            while (scanner.hasNextLine()) {
+                switch (scanner.nextLine().toUpperCase()) {
+                    case "INFO" -> logger.info("Clients connected: " + connectedClients() + "/" + maxClients);
+                    case "SHUTDOWN" -> {
+                        logger.info("Shutting down...");
+                        shutdown();
+                    }
+                    case "SHUTDOWNNOW" -> {
+                        logger.info("Shutting down now...");
+                        shutdownNow();
+                        return;
+                    }
+                    default -> System.out.println("Unknown command");
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Close a SocketChannel while ignoring IOExecption
+     *
+     * @param sc
+     */
+    private static void silentlyClose(Closeable sc) {
+        if (sc != null) {
+            try {
+                sc.close();
+            } catch (IOException e) {
+                // Do nothing
+            }
+        }
+    }
+
+    public static void main(String[] args) throws NumberFormatException, IOException, InterruptedException {
+        if (args.length < 1 || args.length > 2) {
+            usage();
+            return;
+        }
+        var port = Integer.parseInt(args[0]);
+        var maxClients = args.length == 2 ? Integer.parseInt(args[1]) : DEFAULT_MAX_CLIENTS;
+        var server = new VirtualThreadLongSumServer(port, maxClients, BufferAllocator.fromSystemProperties());
+        var console = new Thread(server::consoleRun);
+        console.setDaemon(true);
+        console.start();
+        server.launch();
+    }
+
+    private static void usage() {
+        System.out.println("Usage : VirtualThreadLongSumServer port [maxClients]");
+    }
+}
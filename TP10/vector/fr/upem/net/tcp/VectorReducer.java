@@ -0,0 +1,43 @@
+package fr.upem.net.tcp;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reduction of {@link LongSumRequestEngine} with the Vector API, loaded by reflection so
+ * that the other sources compile without jdk.incubator.vector.
+ * <p>
+ * The bytes of heap buffers are loaded in vectors and byte swapped, the operands being
+ * big endian. Direct buffers can only be loaded through memory segments, a preview API
+ * in Java 21, so they go through the scalar reduction.
+ * <p>
+ * Compile and run with --add-modules jdk.incubator.vector.
+ */
+final class VectorReducer implements LongSumRequestEngine.Reducer {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    @Override
+    public long sum(ByteBuffer buffer, int count) {
+        if (!buffer.hasArray()) {
+            return LongSumRequestEngine.SCALAR.sum(buffer, count);
+        }
+        var array = buffer.array();
+        var offset = buffer.arrayOffset();
+        var length = count * Long.BYTES;
+        var accumulator = ByteVector.zero(SPECIES).reinterpretAsLongs();
+        var i = 0;
+        for (var bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            var longs = ByteVector.fromArray(SPECIES, array, offset + i).reinterpretAsLongs();
+            accumulator = accumulator.add(longs.lanewise(VectorOperators.REVERSE_BYTES));
+        }
+        var sum = accumulator.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i += Long.BYTES) {
+            sum += buffer.getLong(i);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,146 @@
+package fr.upem.net.tcp.nonblocking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Time per frame decoded by {@link IntReader}, {@link StringReader} and
+ * {@link MessageReader}, reading {@value #FRAMES} frames through a bufferIn of
+ * {@value #BUFFER_SIZE} bytes the way a Context does.
+ * <p>
+ * Built by bench/tp11, run with
+ * {@code java -jar bench/tp11/target/benchmarks.jar DecodeBenchmark -prof gc}: as each
+ * operation is a frame, gc.alloc.rate.norm is the number of bytes allocated per frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@OperationsPerInvocation(DecodeBenchmark.FRAMES)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    static final int FRAMES = 512;
+    private static final int BUFFER_SIZE = 1_024;
+    private static final int MAX_LENGTH = 1_024;
+
+    public enum Decoder {
+        INT(IntReader::new),
+        STRING(StringReader::new),
+        MESSAGE(MessageReader::new);
+
+        private final Supplier<Reader<?>> factory;
+
+        Decoder(Supplier<Reader<?>> factory) {
+            this.factory = factory;
+        }
+    }
+
+    public enum Input {
+        /**
+         * Each read brings exactly one frame
+         */
+        WHOLE,
+        /**
+         * Each read brings a single byte, so every frame is split at every byte boundary
+         */
+        BYTE_BY_BYTE,
+        /**
+         * Small frames, each read fills bufferIn with as many of them as it can
+         */
+        SMALL_FRAMES,
+        /**
+         * Strings of the maximum length, each read fills bufferIn
+         */
+        MAX_LENGTH
+    }
+
+    @Param
+    private Decoder decoder;
+
+    @Param
+    private Input input;
+
+    private Reader<?> reader;
+    private ByteBuffer stream; // read-mode
+    private int chunkSize;
+    private final ByteBuffer bufferIn = ByteBuffer.allocate(BUFFER_SIZE); // write-mode
+
+    @Setup
+    public void setup() {
+        reader = decoder.factory.get();
+        var nickname = StandardCharsets.UTF_8.encode("bench");
+        var text = StandardCharsets.UTF_8.encode(input == Input.MAX_LENGTH ? "é".repeat(MAX_LENGTH / 2)
+                : "a short chat message");
+        var frame = ByteBuffer.allocate(2 * (Integer.BYTES + MAX_LENGTH));
+        switch (decoder) {
+            case INT -> frame.putInt(text.remaining());
+            case STRING -> frame.putInt(text.remaining()).put(text);
+            case MESSAGE -> frame.putInt(nickname.remaining()).put(nickname).putInt(text.remaining()).put(text);
+        }
+        frame.flip();
+        stream = ByteBuffer.allocate(FRAMES * frame.remaining());
+        for (var i = 0; i < FRAMES; i++) {
+            stream.put(frame.duplicate());
+        }
+        stream.flip();
+        chunkSize = switch (input) {
+            case WHOLE -> frame.remaining();
+            case BYTE_BY_BYTE -> 1;
+            case SMALL_FRAMES, MAX_LENGTH -> BUFFER_SIZE;
+        };
+    }
+
+    /**
+     * Simulates a read of at most chunkSize bytes in bufferIn
+     */
+    private void read() {
+        var length = Math.min(Math.min(chunkSize, bufferIn.remaining()), stream.remaining());
+        bufferIn.put(bufferIn.position(), stream, stream.position(), length);
+        bufferIn.position(bufferIn.position() + length);
+        stream.position(stream.position() + length);
+    }
+
+    @Benchmark
+    public int decode(Blackhole blackhole) {
+        stream.rewind();
+        bufferIn.clear();
+        reader.reset();
+        var frames = 0;
+        while (stream.hasRemaining()) {
+            read();
+            bufferIn.flip();
+            for (;;) {
+                var status = reader.processReadMode(bufferIn);
+                if (status != Reader.ProcessStatus.DONE) {
+                    break;
+                }
+                blackhole.consume(reader.get());
+                reader.reset();
+                frames++;
+            }
+            bufferIn.compact();
+        }
+        if (frames != FRAMES) {
+            throw new AssertionError(frames + " frames decoded instead of " + FRAMES);
+        }
+        return frames;
+    }
+}
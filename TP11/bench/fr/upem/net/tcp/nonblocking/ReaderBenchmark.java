@@ -0,0 +1,112 @@
+package fr.upem.net.tcp.nonblocking;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a stream of chat frames fed to bufferIn in chunks of chunkSize bytes, the
+ * way a Context does it on each doRead, with the write-mode and the read-mode
+ * protocols of {@link Reader}.
+ * <p>
+ * Built by bench/tp11, run with
+ * {@code java -jar bench/tp11/target/benchmarks.jar ReaderBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReaderBenchmark {
+
+    private static final int BUFFER_SIZE = 1_024;
+    private static final int FRAMES = 1_000;
+
+    @Param({"7", "256", "1024"})
+    private int chunkSize;
+
+    private ByteBuffer stream; // read-mode
+    private final ByteBuffer bufferIn = ByteBuffer.allocate(BUFFER_SIZE); // write-mode
+    private final MessageViewReader reader = new MessageViewReader();
+
+    @Setup
+    public void setup() {
+        var nickname = StandardCharsets.UTF_8.encode("bench");
+        var message = StandardCharsets.UTF_8.encode("a short chat message");
+        var frameSize = 2 * Integer.BYTES + nickname.remaining() + message.remaining();
+        stream = ByteBuffer.allocate(FRAMES * frameSize);
+        for (var i = 0; i < FRAMES; i++) {
+            stream.putInt(nickname.remaining()).put(nickname.duplicate());
+            stream.putInt(message.remaining()).put(message.duplicate());
+        }
+        stream.flip();
+    }
+
+    /**
+     * Simulates a read of at most chunkSize bytes in bufferIn
+     */
+    private void read() {
+        var length = Math.min(Math.min(chunkSize, bufferIn.remaining()), stream.remaining());
+        bufferIn.put(bufferIn.position(), stream, stream.position(), length);
+        bufferIn.position(bufferIn.position() + length);
+        stream.position(stream.position() + length);
+    }
+
+    @Benchmark
+    public int writeMode(Blackhole blackhole) {
+        stream.rewind();
+        bufferIn.clear();
+        reader.reset();
+        var frames = 0;
+        while (stream.hasRemaining()) {
+            read();
+            for (;;) {
+                var status = reader.process(bufferIn);
+                if (status != Reader.ProcessStatus.DONE) {
+                    break;
+                }
+                blackhole.consume(reader.get());
+                reader.reset();
+                frames++;
+            }
+        }
+        return frames;
+    }
+
+    @Benchmark
+    public int readMode(Blackhole blackhole) {
+        stream.rewind();
+        bufferIn.clear();
+        reader.reset();
+        var frames = 0;
+        while (stream.hasRemaining()) {
+            read();
+            bufferIn.flip();
+            for (;;) {
+                var status = reader.processReadMode(bufferIn);
+                if (status != Reader.ProcessStatus.DONE) {
+                    break;
+                }
+                blackhole.consume(reader.get());
+                reader.reset();
+                frames++;
+            }
+            bufferIn.compact();
+        }
+        return frames;
+    }
+}
@@ -0,0 +1,158 @@
+package fr.upem.net.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocator recycling its buffers.
+ * <p>
+ * Requested sizes are rounded up to a size class, a power of 2 between
+ * {@value #MIN_CLASS_SIZE} bytes and the slab size. Each class keeps its released
+ * buffers in a free list, and carves new ones in slabs of slabSize bytes when the list
+ * is empty. The slabs are never freed, so the memory used by the pool is at most
+ * maxPooledBytes (rounded up to a slab): once it is reached, or for sizes larger than
+ * a slab, buffers are allocated unpooled.
+ * <p>
+ * Only the buffers carved from the slabs go back to the free lists when they are
+ * released. The unpooled buffers and the buffers of other allocators are left to the
+ * GC, so the free lists never hold more than maxPooledBytes.
+ */
+public final class PooledBufferAllocator implements BufferAllocator {
+
+    static final int DEFAULT_SLAB_SIZE = 1 << 20;
+    static final long DEFAULT_MAX_POOLED_BYTES = 64L << 20;
+    private static final int MIN_CLASS_SHIFT = 6;
+    private static final int MIN_CLASS_SIZE = 1 << MIN_CLASS_SHIFT;
+
+    private final class SizeClass {
+        private final int size;
+        private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+        // the buffers carved from the slabs, mapped to true while they are handed out
+        private final IdentityHashMap<ByteBuffer, Boolean> carved = new IdentityHashMap<>();
+        private ByteBuffer slab; // in write-mode, position is the start of the next buffer
+
+        private SizeClass(int size) {
+            this.size = size;
+        }
+
+        /**
+         * @return a buffer of this class or null if the pool is exhausted
+         */
+        private synchronized ByteBuffer take() {
+            var buffer = free.poll();
+            if (buffer == null) {
+                if (slab == null || slab.remaining() < size) {
+                    if (reserved.addAndGet(slabSize) > maxPooledBytes) {
+                        reserved.addAndGet(-slabSize);
+                        return null;
+                    }
+                    slab = direct ? ByteBuffer.allocateDirect(slabSize) : ByteBuffer.allocate(slabSize);
+                }
+                buffer = slab.slice(slab.position(), size);
+                slab.position(slab.position() + size);
+            }
+            carved.put(buffer, true);
+            return buffer;
+        }
+
+        /**
+         * Puts buffer back in the free list if it was carved from the slabs of this
+         * class and is handed out
+         */
+        private synchronized void give(ByteBuffer buffer) {
+            if (!Boolean.TRUE.equals(carved.replace(buffer, false))) {
+                return;
+            }
+            free.offer(buffer.clear());
+        }
+    }
+
+    private final boolean direct;
+    private final int slabSize;
+    private final long maxPooledBytes;
+    private final SizeClass[] classes;
+    private final AtomicLong reserved = new AtomicLong();
+    private final AtomicLong unpooled = new AtomicLong();
+
+    /**
+     * @param direct         true to allocate direct slabs
+     * @param slabSize       size of the slabs, a power of 2 which is also the largest class
+     * @param maxPooledBytes maximum number of bytes reserved for the slabs
+     */
+    public PooledBufferAllocator(boolean direct, int slabSize, long maxPooledBytes) {
+        if (slabSize < MIN_CLASS_SIZE || Integer.bitCount(slabSize) != 1) {
+            throw new IllegalArgumentException("Slab size must be a power of 2 larger than " + MIN_CLASS_SIZE);
+        }
+        if (maxPooledBytes < 0) {
+            throw new IllegalArgumentException("Max pooled bytes must be positive");
+        }
+        this.direct = direct;
+        this.slabSize = slabSize;
+        this.maxPooledBytes = maxPooledBytes;
+        classes = new SizeClass[classIndex(slabSize) + 1];
+        for (var i = 0; i < classes.length; i++) {
+            classes[i] = new SizeClass(MIN_CLASS_SIZE << i);
+        }
+    }
+
+    private static int classIndex(int size) {
+        if (size <= MIN_CLASS_SIZE) {
+            return 0;
+        }
+        return Integer.SIZE - Integer.numberOfLeadingZeros(size - 1) - MIN_CLASS_SHIFT;
+    }
+
+    @Override
+    public ByteBuffer allocate(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size");
+        }
+        if (size <= slabSize) {
+            var buffer = classes[classIndex(size)].take();
+            if (buffer != null) {
+                return buffer.limit(size);
+            }
+        }
+        unpooled.incrementAndGet();
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Hands the buffer back to the free list of its class if it was carved from the
+     * slabs of this allocator, other buffers are left to the GC. Releasing a buffer
+     * twice has no effect.
+     */
+    @Override
+    public void release(ByteBuffer buffer) {
+        Objects.requireNonNull(buffer);
+        var capacity = buffer.capacity();
+        if (buffer.isDirect() != direct || capacity > slabSize || capacity < MIN_CLASS_SIZE
+                || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        classes[classIndex(capacity)].give(buffer);
+    }
+
+    /**
+     * @return the number of bytes reserved for the slabs
+     */
+    public long reservedBytes() {
+        return reserved.get();
+    }
+
+    /**
+     * @return the number of buffers allocated outside of the pool
+     */
+    public long unpooledAllocations() {
+        return unpooled.get();
+    }
+
+    @Override
+    public String toString() {
+        return "PooledBufferAllocator[" + (direct ? "direct" : "heap") + ", reserved=" + reserved.get() + "/"
+                + maxPooledBytes + " bytes, unpooled=" + unpooled.get() + "]";
+    }
+}
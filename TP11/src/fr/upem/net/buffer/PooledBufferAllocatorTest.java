@@ -0,0 +1,76 @@
+package fr.upem.net.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PooledBufferAllocatorTest {
+
+    @Test
+    public void sizesAreRoundedToAClass() {
+        var allocator = new PooledBufferAllocator(false, 1024, 4096);
+        var buffer = allocator.allocate(100);
+        assertEquals(0, buffer.position());
+        assertEquals(100, buffer.limit());
+        assertEquals(128, buffer.capacity());
+    }
+
+    @Test
+    public void releasedBuffersAreReused() {
+        var allocator = new PooledBufferAllocator(false, 1024, 4096);
+        var buffer = allocator.allocate(64);
+        buffer.putInt(42);
+        allocator.release(buffer);
+        var again = allocator.allocate(50);
+        assertSame(buffer, again);
+        assertEquals(0, again.position());
+        assertEquals(50, again.limit());
+    }
+
+    @Test
+    public void fallsBackToUnpooledWhenExhausted() {
+        var allocator = new PooledBufferAllocator(false, 1024, 1024);
+        allocator.allocate(1024);
+        assertEquals(1024, allocator.reservedBytes());
+        var buffer = allocator.allocate(512);
+        assertEquals(512, buffer.capacity());
+        assertEquals(1, allocator.unpooledAllocations());
+        allocator.allocate(2048);
+        assertEquals(2, allocator.unpooledAllocations());
+    }
+
+    @Test
+    public void onlyPooledBuffersAreRecycled() {
+        var allocator = new PooledBufferAllocator(false, 1024, 1024);
+        var pooled = allocator.allocate(1024);
+        var unpooled = allocator.allocate(1024);
+        allocator.release(unpooled);
+        allocator.release(ByteBuffer.allocate(1024));
+        assertNotSame(unpooled, allocator.allocate(1024));
+        assertEquals(2, allocator.unpooledAllocations());
+        allocator.release(pooled);
+        assertSame(pooled, allocator.allocate(1024));
+    }
+
+    @Test
+    public void doubleReleaseRecyclesOnce() {
+        var allocator = new PooledBufferAllocator(false, 1024, 1024);
+        var buffer = allocator.allocate(512);
+        allocator.release(buffer);
+        allocator.release(buffer);
+        assertSame(buffer, allocator.allocate(512));
+        assertNotSame(buffer, allocator.allocate(512));
+    }
+
+    @Test
+    public void trackingDetectsDoubleRelease() {
+        var allocator = BufferAllocator.tracking(BufferAllocator.heap());
+        var buffer = allocator.allocate(16);
+        assertEquals(1, allocator.outstandingBuffers());
+        allocator.release(buffer);
+        assertEquals(0, allocator.outstandingBuffers());
+        assertThrows(IllegalArgumentException.class, () -> allocator.release(buffer));
+    }
+}
@@ -0,0 +1,27 @@
+package fr.upem.net.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Allocator creating a new buffer on each call, released buffers are left to the GC
+ */
+enum UnpooledBufferAllocator implements BufferAllocator {
+    HEAP {
+        @Override
+        public ByteBuffer allocate(int size) {
+            return ByteBuffer.allocate(size);
+        }
+    },
+    DIRECT {
+        @Override
+        public ByteBuffer allocate(int size) {
+            return ByteBuffer.allocateDirect(size);
+        }
+    };
+
+    @Override
+    public void release(ByteBuffer buffer) {
+        Objects.requireNonNull(buffer);
+    }
+}
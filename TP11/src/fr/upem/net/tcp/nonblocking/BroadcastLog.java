@@ -0,0 +1,152 @@
+package fr.upem.net.tcp.nonblocking;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Ring of already encoded frames shared by all the clients of a selector loop.
+ * <p>
+ * Each frame is written once in the ring, and each reader only keeps a cursor: the
+ * absolute offset (counted since the creation of the log) of the next byte it has to
+ * send. A reader whose cursor is older than {@link #head()} has been overrun, its
+ * bytes were overwritten by newer frames.
+ * <p>
+ * The log is not thread-safe, it must only be used by the thread of its selector loop.
+ */
+class BroadcastLog {
+
+    private final ByteBuffer ring; // only accessed with absolute positions
+    private final int mask;
+    private final long[] frameStarts; // ring of the absolute offsets of the last frames
+    private final int frameMask;
+    private long frames;
+    private long tail;
+
+    /**
+     * @param capacity size of the ring in bytes, must be a power of 2
+     */
+    BroadcastLog(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of 2");
+        }
+        ring = ByteBuffer.allocate(capacity);
+        mask = capacity - 1;
+        // a frame has at least two length fields, so the index covers the whole ring
+        var indexSize = Math.max(1, capacity / (2 * Integer.BYTES));
+        frameStarts = new long[indexSize];
+        frameMask = indexSize - 1;
+    }
+
+    int capacity() {
+        return ring.capacity();
+    }
+
+    /**
+     * @return the offset following the last byte of the last frame
+     */
+    long tail() {
+        return tail;
+    }
+
+    /**
+     * @return the offset of the oldest byte still stored in the ring
+     */
+    long head() {
+        return Math.max(0, tail - ring.capacity());
+    }
+
+    /**
+     * Appends the frame to the log, overwriting the oldest bytes if needed.
+     * <p>
+     * The frame must be in read-mode, it is not modified by this method so the same
+     * frame can be appended to several logs.
+     *
+     * @param frame an encoded frame smaller than the capacity of the log
+     */
+    void append(ByteBuffer frame) {
+        var length = frame.remaining();
+        if (length > ring.capacity()) {
+            throw new IllegalArgumentException("Frame larger than the log");
+        }
+        frameStarts[(int) (frames++ & frameMask)] = tail;
+        var index = (int) (tail & mask);
+        var first = Math.min(length, ring.capacity() - index);
+        ring.put(index, frame, frame.position(), first);
+        if (first < length) {
+            ring.put(0, frame, frame.position() + first, length - first);
+        }
+        tail += length;
+    }
+
+    /**
+     * @return two views on the ring to be used by a single reader with {@link #segments}
+     */
+    ByteBuffer[] views() {
+        return new ByteBuffer[]{ring.duplicate(), ring.duplicate()};
+    }
+
+    /**
+     * Sets the position and limit of the views on the bytes between cursor and end:
+     * one view is enough unless these bytes wrap around the end of the ring. The views
+     * can then be given to a gathering write.
+     *
+     * @param cursor an offset between {@link #head()} and {@link #tail()}
+     * @param end    an offset between cursor and {@link #tail()}
+     * @param views  buffers obtained by {@link #views()}
+     * @return the number of views to write, 0 if there is nothing to write
+     */
+    int segments(long cursor, long end, ByteBuffer[] views) {
+        assert cursor >= head() && cursor <= end && end <= tail;
+        if (cursor == end) {
+            return 0;
+        }
+        var start = (int) (cursor & mask);
+        var stop = (int) Math.min(start + (end - cursor), ring.capacity());
+        views[0].clear().position(start).limit(stop);
+        var wrapped = (int) (end - cursor) - (stop - start);
+        if (wrapped == 0) {
+            return 1;
+        }
+        views[1].clear().limit(wrapped);
+        return 2;
+    }
+
+    /**
+     * @return the offset of the first frame starting at or after offset and whose
+     * bytes are still in the ring, or {@link #tail()} if there is none
+     */
+    long nextFrameStart(long offset) {
+        var frame = firstFrameFrom(Math.max(offset, head()));
+        return frame == frames ? tail : frameStarts[(int) (frame & frameMask)];
+    }
+
+    /**
+     * @return true if a frame starts exactly at offset, even if its bytes were
+     * overwritten since, as long as the frame is still indexed
+     */
+    boolean isFrameStart(long offset) {
+        if (offset == tail) {
+            return true;
+        }
+        var frame = firstFrameFrom(offset);
+        return frame != frames && frameStarts[(int) (frame & frameMask)] == offset;
+    }
+
+    /**
+     * Binary search in the index of the last frames
+     *
+     * @return the number of the first indexed frame starting at or after offset
+     */
+    private long firstFrameFrom(long offset) {
+        var low = Math.max(0, frames - frameStarts.length);
+        var high = frames; // exclusive
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+            if (frameStarts[(int) (middle & frameMask)] < offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
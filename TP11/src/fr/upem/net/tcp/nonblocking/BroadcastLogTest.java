@@ -0,0 +1,71 @@
+package fr.upem.net.tcp.nonblocking;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BroadcastLogTest {
+
+    private static ByteBuffer frame(int length, byte value) {
+        var bb = ByteBuffer.allocate(length);
+        while (bb.hasRemaining()) {
+            bb.put(value);
+        }
+        return bb.flip();
+    }
+
+    @Test
+    public void appendLeavesFrameUntouched() {
+        var log = new BroadcastLog(64);
+        var frame = frame(10, (byte) 1);
+        log.append(frame);
+        log.append(frame);
+        assertEquals(0, frame.position());
+        assertEquals(10, frame.limit());
+        assertEquals(20, log.tail());
+    }
+
+    @Test
+    public void segmentsWrapAround() {
+        var log = new BroadcastLog(16);
+        log.append(frame(12, (byte) 1));
+        log.append(frame(8, (byte) 2));
+        assertEquals(4, log.head());
+        var views = log.views();
+        assertEquals(2, log.segments(4, 20, views));
+        assertEquals(4, views[0].position());
+        assertEquals(16, views[0].limit());
+        assertEquals(2, views[0].get(12));
+        assertEquals(0, views[1].position());
+        assertEquals(4, views[1].limit());
+        assertEquals(2, views[1].get(3));
+        assertEquals(1, log.segments(16, 20, views));
+        assertEquals(0, views[0].position());
+        assertEquals(4, views[0].limit());
+        assertEquals(1, log.segments(4, 10, views));
+        assertEquals(6, views[0].remaining());
+        assertEquals(0, log.segments(20, 20, views));
+    }
+
+    @Test
+    public void frameStarts() {
+        var log = new BroadcastLog(32);
+        log.append(frame(12, (byte) 1));
+        log.append(frame(12, (byte) 2));
+        log.append(frame(12, (byte) 3));
+        assertEquals(4, log.head());
+        assertTrue(log.isFrameStart(0));
+        assertFalse(log.isFrameStart(4));
+        assertTrue(log.isFrameStart(36));
+        assertEquals(12, log.nextFrameStart(0));
+        assertEquals(24, log.nextFrameStart(13));
+        assertEquals(36, log.nextFrameStart(25));
+    }
+
+    @Test
+    public void capacityMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new BroadcastLog(100));
+    }
+}
@@ -9,6 +9,7 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Scanner;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -23,9 +24,9 @@ public class ClientChat {
         private final SelectionKey key;
         private final SocketChannel sc;
         private final ByteBuffer bufferIn = ByteBuffer.allocate(BUFFER_SIZE);
-        private final ByteBuffer bufferOut = ByteBuffer.allocate(BUFFER_SIZE);
-        private final ArrayDeque<Message> queue = new ArrayDeque<>();
-        private final MessageReader reader = new MessageReader();
+        private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>(); // encoded messages in read-mode
+        private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+        private final MessageViewReader reader = new MessageViewReader(); // messages are printed, not kept
         private boolean closed = false;
 
         private Context(SelectionKey key) {
@@ -37,11 +38,13 @@ public class ClientChat {
          * Process the content of bufferIn
          * <p>
          * The convention is that bufferIn is in write-mode before the call to process
-         * and after the call
+         * and after the call. The messages are read with bufferIn in read-mode, so it is
+         * only compacted once all of them were processed.
          */
         private void processIn() {
-            while (bufferIn.hasRemaining()) {
-                switch (reader.process(bufferIn)) {
+            bufferIn.flip();
+            for (;;) {
+                switch (reader.processReadMode(bufferIn)) {
                     case DONE -> {
                         var message = reader.get();
                         reader.reset();
@@ -53,6 +56,7 @@ public class ClientChat {
                         return;
                     }
                     case REFILL -> {
+                        bufferIn.compact();
                         return;
                     }
                 }
@@ -60,36 +64,18 @@ public class ClientChat {
         }
 
         /**
-         * Add a message to the message queue, tries to fill bufferOut and updateInterestOps
+         * Add a message to the message queue and updateInterestOps
          */
-        private void queueMessage(Message msg) throws InterruptedException {
-            queue.offer(msg);
-            processOut();
+        private void queueMessage(Message msg) {
+            queue.offer(msg.toByteBuffer());
             updateInterestOps();
         }
 
-        /**
-         * Try to fill bufferOut from the message queue
-         */
-        private void processOut() throws InterruptedException {
-            while (!queue.isEmpty()) {
-                var message = queue.peek();
-                var messageBuffer = message.toByteBuffer();
-
-                if (bufferOut.remaining() >= messageBuffer.remaining()) {
-                    bufferOut.put(messageBuffer);
-                    queue.pop();
-                } else {
-                    return;
-                }
-            }
-        }
-
         /**
          * Update the interestOps of the key looking only at values of the boolean
-         * closed and of both ByteBuffers.
+         * closed, of bufferIn and of the message queue.
          * <p>
-         * The convention is that both buffers are in write-mode before the call to
+         * The convention is that bufferIn is in write-mode before the call to
          * updateInterestOps and after the call. Also, it is assumed that process has
          * been called just before updateInterestOps.
          */
@@ -98,7 +84,7 @@ public class ClientChat {
             if (!closed && bufferIn.hasRemaining()) {
                 interestOps |= SelectionKey.OP_READ;
             }
-            if (!closed && bufferOut.position() != 0) {
+            if (!closed && !queue.isEmpty()) {
                 interestOps |= SelectionKey.OP_WRITE;
             }
             if (interestOps == 0) {
@@ -119,7 +105,7 @@ public class ClientChat {
         /**
          * Performs the read action on sc
          * <p>
-         * The convention is that both buffers are in write-mode before the call to
+         * The convention is that bufferIn is in write-mode before the call to
          * doRead and after the call
          *
          * @throws IOException
@@ -139,25 +125,34 @@ public class ClientChat {
         }
 
         /**
-         * Performs the write action on sc
+         * Performs the write action on sc, handing up to MAX_GATHER queued messages to a
+         * single gathering write. Fully written messages are removed from the queue.
          * <p>
-         * The convention is that both buffers are in write-mode before the call to
+         * The convention is that bufferIn is in write-mode before the call to
          * doWrite and after the call
          *
          * @throws IOException
          */
-        private void doWrite() throws IOException, InterruptedException {
-            bufferOut.flip();
-            if (closed && !bufferIn.hasRemaining()) {
+        private void doWrite() throws IOException {
+            if (closed && queue.isEmpty()) {
                 silentlyClose();
                 return;
             }
-            var bytes = sc.write(bufferOut);
-            bufferOut.compact();
+            var count = 0;
+            for (var buffer : queue) {
+                if (count == gather.length) {
+                    break;
+                }
+                gather[count++] = buffer;
+            }
+            var bytes = sc.write(gather, 0, count);
+            Arrays.fill(gather, 0, count, null);
+            while (!queue.isEmpty() && !queue.peek().hasRemaining()) {
+                queue.poll();
+            }
             if (bytes == 0) {
                 logger.severe("Selector gave a bad hint");
             }
-            processOut();
             updateInterestOps();
         }
 
@@ -170,6 +165,7 @@ public class ClientChat {
     }
 
     static private int BUFFER_SIZE = 10_000;
+    static private int MAX_GATHER = 16;
     static private Logger logger = Logger.getLogger(ClientChat.class.getName());
 
     private final SocketChannel sc;
@@ -220,13 +216,9 @@ public class ClientChat {
      * Processes the command from the BlockingQueue
      */
     private void processCommands() {
-        try {
-            while (!queue.isEmpty()) {
-                var msg = queue.poll();
-                uniqueContext.queueMessage(msg);
-            }
-        } catch (InterruptedException e) {
-            throw new AssertionError(e);
+        while (!queue.isEmpty()) {
+            var msg = queue.poll();
+            uniqueContext.queueMessage(msg);
         }
     }
 
@@ -241,13 +233,7 @@ public class ClientChat {
 
         while (!Thread.interrupted()) {
             try {
-                selector.select(k -> {
-                    try {
-                        treatKey(k);
-                    } catch (InterruptedException e) {
-                        logger.info("Interrupted while treating key");
-                    }
-                });
+                selector.select(this::treatKey);
                 processCommands();
             } catch (UncheckedIOException tunneled) {
                 throw tunneled.getCause();
@@ -255,7 +241,7 @@ public class ClientChat {
         }
     }
 
-    private void treatKey(SelectionKey key) throws InterruptedException {
+    private void treatKey(SelectionKey key) {
         try {
             if (key.isValid() && key.isConnectable()) {
                 uniqueContext.doConnect();
@@ -0,0 +1,140 @@
+package fr.upem.net.tcp.nonblocking;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reader of the raw bytes of a chat frame (nickname then content, both prefixed by
+ * their length), for a server relaying the frames without decoding them.
+ * <p>
+ * Only the two lengths are checked. {@link #get()} returns the whole frame in
+ * read-mode, which must not be modified. With {@link #processReadMode(ByteBuffer)},
+ * when the source buffer holds the whole frame, it is a slice of this buffer without
+ * any copy: it is only valid until the source is compacted. Otherwise it is an
+ * internal buffer, valid until the next call to {@link #reset()}.
+ */
+public class FrameReader implements Reader<ByteBuffer> {
+
+    static final int MAX_LENGTH = 1024;
+    static final int MAX_FRAME_SIZE = 2 * (Integer.BYTES + MAX_LENGTH);
+
+    private enum State {
+        DONE, WAITING_NICKNAME_LENGTH, WAITING_NICKNAME, WAITING_CONTENT_LENGTH, WAITING_CONTENT, ERROR
+    }
+
+    private State state = State.WAITING_NICKNAME_LENGTH;
+    private final ByteBuffer internalBuffer = ByteBuffer.allocate(MAX_FRAME_SIZE); // write-mode
+    private int fieldEnd = Integer.BYTES; // position of internalBuffer ending the current field
+    private ByteBuffer frame;
+
+    @Override
+    public ProcessStatus process(ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            // a slice of buffer would not survive the compact
+            return process(buffer, false);
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    @Override
+    public ProcessStatus processReadMode(ByteBuffer buffer) {
+        return process(buffer, true);
+    }
+
+    private ProcessStatus process(ByteBuffer buffer, boolean slice) {
+        if (state == State.DONE || state == State.ERROR) {
+            throw new IllegalStateException();
+        }
+        if (slice && state == State.WAITING_NICKNAME_LENGTH && internalBuffer.position() == 0) {
+            var length = frameLength(buffer);
+            if (length > 0) {
+                state = State.DONE;
+                frame = buffer.slice(buffer.position(), length);
+                buffer.position(buffer.position() + length);
+                return ProcessStatus.DONE;
+            }
+        }
+        for (;;) {
+            if (!fill(buffer)) {
+                return ProcessStatus.REFILL;
+            }
+            switch (state) {
+                case WAITING_NICKNAME_LENGTH, WAITING_CONTENT_LENGTH -> {
+                    var length = internalBuffer.getInt(fieldEnd - Integer.BYTES);
+                    if (length < 0 || length > MAX_LENGTH) {
+                        state = State.ERROR;
+                        return ProcessStatus.ERROR;
+                    }
+                    fieldEnd += length;
+                    state = state == State.WAITING_NICKNAME_LENGTH ? State.WAITING_NICKNAME : State.WAITING_CONTENT;
+                }
+                case WAITING_NICKNAME -> {
+                    fieldEnd += Integer.BYTES;
+                    state = State.WAITING_CONTENT_LENGTH;
+                }
+                case WAITING_CONTENT -> {
+                    state = State.DONE;
+                    frame = internalBuffer.flip();
+                    return ProcessStatus.DONE;
+                }
+                default -> throw new AssertionError();
+            }
+        }
+    }
+
+    /**
+     * @return the size of the frame starting at the position of buffer, or 0 if buffer
+     * does not hold a whole and valid frame
+     */
+    private static int frameLength(ByteBuffer buffer) {
+        var start = buffer.position();
+        var remaining = buffer.remaining();
+        if (remaining < 2 * Integer.BYTES) {
+            return 0;
+        }
+        var nicknameLength = buffer.getInt(start);
+        if (nicknameLength < 0 || nicknameLength > MAX_LENGTH || remaining < 2 * Integer.BYTES + nicknameLength) {
+            return 0;
+        }
+        var contentLength = buffer.getInt(start + Integer.BYTES + nicknameLength);
+        if (contentLength < 0 || contentLength > MAX_LENGTH) {
+            return 0;
+        }
+        var length = 2 * Integer.BYTES + nicknameLength + contentLength;
+        return remaining >= length ? length : 0;
+    }
+
+    /**
+     * Copies bytes of buffer (in read-mode) to internalBuffer up to fieldEnd
+     *
+     * @return true if the current field is complete
+     */
+    private boolean fill(ByteBuffer buffer) {
+        var missing = fieldEnd - internalBuffer.position();
+        if (buffer.remaining() <= missing) {
+            internalBuffer.put(buffer);
+        } else {
+            internalBuffer.put(internalBuffer.position(), buffer, buffer.position(), missing);
+            internalBuffer.position(fieldEnd);
+            buffer.position(buffer.position() + missing);
+        }
+        return internalBuffer.position() == fieldEnd;
+    }
+
+    @Override
+    public ByteBuffer get() {
+        if (state != State.DONE) {
+            throw new IllegalStateException();
+        }
+        return frame;
+    }
+
+    @Override
+    public void reset() {
+        state = State.WAITING_NICKNAME_LENGTH;
+        internalBuffer.clear();
+        fieldEnd = Integer.BYTES;
+        frame = null;
+    }
+}
@@ -0,0 +1,50 @@
+package fr.upem.net.tcp.nonblocking;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameReaderTest {
+
+    @Test
+    public void wholeFrameIsSliced() {
+        var bb = ByteBuffer.allocate(1024);
+        var first = new Message("nick", "hello").toByteBuffer();
+        var second = new Message("other", "é").toByteBuffer();
+        bb.put(first.duplicate()).put(second.duplicate()).flip();
+        var fr = new FrameReader();
+        assertEquals(Reader.ProcessStatus.DONE, fr.processReadMode(bb));
+        assertEquals(first, fr.get());
+        assertEquals(first.remaining(), bb.position());
+        fr.reset();
+        assertEquals(Reader.ProcessStatus.DONE, fr.processReadMode(bb));
+        assertEquals(new Message("other", "é"), Message.fromFrame(fr.get()));
+        assertFalse(bb.hasRemaining());
+    }
+
+    @Test
+    public void fragmentedFrame() {
+        var frame = new Message("nick", "a longer message").toByteBuffer();
+        var small = ByteBuffer.allocate(3);
+        var fr = new FrameReader();
+        var status = Reader.ProcessStatus.REFILL;
+        var source = frame.duplicate();
+        while (source.hasRemaining()) {
+            while (source.hasRemaining() && small.hasRemaining()) {
+                small.put(source.get());
+            }
+            status = fr.process(small);
+        }
+        assertEquals(Reader.ProcessStatus.DONE, status);
+        assertEquals(frame, fr.get());
+    }
+
+    @Test
+    public void lengthTooLarge() {
+        var bb = ByteBuffer.allocate(64);
+        bb.putInt(3).put(new byte[3]).putInt(1025).flip();
+        assertEquals(Reader.ProcessStatus.ERROR, new FrameReader().processReadMode(bb));
+    }
+}
@@ -12,6 +12,12 @@ class Helpers {
 	 * Theses methods are here to help understanding the behavior of the selector
 	 ***/
 
+	/**
+	 * Prints the keys on each select, far too slow to be left on: enable it with
+	 * -Dfr.upem.net.debug=true
+	 */
+	static final boolean DEBUG = Boolean.getBoolean("fr.upem.net.debug");
+
 	private static String interestOpsToString(SelectionKey key) {
 		if (!key.isValid()) {
 			return "CANCELLED";
@@ -0,0 +1,109 @@
+package fr.upem.net.tcp.nonblocking;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reader of a LongSum request: an int giving the number of operands followed by the
+ * operands as longs. The operands are summed as they arrive, the request is never
+ * buffered whatever its size, and {@link #get()} returns the sum.
+ */
+public class LongSumReader implements Reader<Long> {
+
+    private enum State {
+        DONE, WAITING_COUNT, WAITING_OPERANDS, ERROR
+    }
+
+    private State state = State.WAITING_COUNT;
+    private final IntReader countReader = new IntReader();
+    private final ByteBuffer partial = ByteBuffer.allocate(Long.BYTES); // write-mode, an operand split between reads
+    private int remaining; // operands not yet summed
+    private long sum;
+
+    @Override
+    public ProcessStatus process(ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            return processReadMode(buffer);
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    @Override
+    public ProcessStatus processReadMode(ByteBuffer buffer) {
+        if (state == State.DONE || state == State.ERROR) {
+            throw new IllegalStateException();
+        }
+        if (state == State.WAITING_COUNT) {
+            var status = countReader.processReadMode(buffer);
+            if (status != ProcessStatus.DONE) {
+                return status;
+            }
+            remaining = countReader.get();
+            if (remaining < 0) {
+                state = State.ERROR;
+                return ProcessStatus.ERROR;
+            }
+            state = State.WAITING_OPERANDS;
+        }
+        while (remaining > 0) {
+            if (partial.position() != 0 || buffer.remaining() < Long.BYTES) {
+                if (!fillPartial(buffer)) {
+                    return ProcessStatus.REFILL;
+                }
+                continue;
+            }
+            var count = Math.min(remaining, buffer.remaining() / Long.BYTES);
+            var start = buffer.position();
+            var end = start + count * Long.BYTES;
+            for (var i = start; i < end; i += Long.BYTES) {
+                sum += buffer.getLong(i);
+            }
+            buffer.position(end);
+            remaining -= count;
+        }
+        state = State.DONE;
+        return ProcessStatus.DONE;
+    }
+
+    /**
+     * Copies bytes of buffer (in read-mode) to partial and adds the operand to the sum
+     * once it is complete
+     *
+     * @return true if an operand was added
+     */
+    private boolean fillPartial(ByteBuffer buffer) {
+        if (buffer.remaining() <= partial.remaining()) {
+            partial.put(buffer);
+        } else {
+            var oldLimit = buffer.limit();
+            buffer.limit(buffer.position() + partial.remaining());
+            partial.put(buffer);
+            buffer.limit(oldLimit);
+        }
+        if (partial.hasRemaining()) {
+            return false;
+        }
+        sum += partial.flip().getLong();
+        partial.clear();
+        remaining--;
+        return true;
+    }
+
+    @Override
+    public Long get() {
+        if (state != State.DONE) {
+            throw new IllegalStateException();
+        }
+        return sum;
+    }
+
+    @Override
+    public void reset() {
+        state = State.WAITING_COUNT;
+        countReader.reset();
+        partial.clear();
+        remaining = 0;
+        sum = 0;
+    }
+}
@@ -0,0 +1,63 @@
+package fr.upem.net.tcp.nonblocking;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongSumReaderTest {
+
+    private static ByteBuffer request(long... operands) {
+        var bb = ByteBuffer.allocate(Integer.BYTES + operands.length * Long.BYTES);
+        bb.putInt(operands.length);
+        for (var operand : operands) {
+            bb.putLong(operand);
+        }
+        return bb.flip();
+    }
+
+    @Test
+    public void pipelinedRequests() {
+        var bb = ByteBuffer.allocate(1024);
+        bb.put(request(1, 2, 3)).put(request()).put(request(-5, Long.MAX_VALUE)).flip();
+        var reader = new LongSumReader();
+        assertEquals(Reader.ProcessStatus.DONE, reader.processReadMode(bb));
+        assertEquals(6L, (long) reader.get());
+        reader.reset();
+        assertEquals(Reader.ProcessStatus.DONE, reader.processReadMode(bb));
+        assertEquals(0L, (long) reader.get());
+        reader.reset();
+        assertEquals(Reader.ProcessStatus.DONE, reader.processReadMode(bb));
+        assertEquals(Long.MAX_VALUE - 5, (long) reader.get());
+        assertFalse(bb.hasRemaining());
+    }
+
+    @Test
+    public void requestLargerThanTheBuffer() {
+        var operands = new long[1_000];
+        var expected = 0L;
+        for (var i = 0; i < operands.length; i++) {
+            operands[i] = i * 1_000_003L;
+            expected += operands[i];
+        }
+        var source = request(operands);
+        var small = ByteBuffer.allocate(13);
+        var reader = new LongSumReader();
+        var status = Reader.ProcessStatus.REFILL;
+        while (source.hasRemaining()) {
+            while (source.hasRemaining() && small.hasRemaining()) {
+                small.put(source.get());
+            }
+            status = reader.process(small);
+        }
+        assertEquals(Reader.ProcessStatus.DONE, status);
+        assertEquals(expected, (long) reader.get());
+    }
+
+    @Test
+    public void negativeCount() {
+        var bb = ByteBuffer.allocate(16).putInt(-1);
+        assertEquals(Reader.ProcessStatus.ERROR, new LongSumReader().process(bb));
+    }
+}
@@ -0,0 +1,136 @@
+package fr.upem.net.tcp.nonblocking;
+
+/**
+ * Counters and histograms of a selector loop, cheap enough to be always on.
+ * <p>
+ * Everything is allocated up front and only updated by the thread of the loop, with
+ * plain writes: reading the stats from another thread, with {@link #toString()}, may
+ * give slightly stale values.
+ */
+final class LoopStats {
+
+    /**
+     * Histogram of positive values with one bucket per power of 2: bucket i counts
+     * the values in [2^i, 2^(i+1)), bucket 0 also counts 0.
+     */
+    static final class Histogram {
+        private final long[] buckets = new long[Long.SIZE];
+        private long count;
+        private long sum;
+        private long max;
+
+        void record(long value) {
+            buckets[value <= 0 ? 0 : Long.SIZE - 1 - Long.numberOfLeadingZeros(value)]++;
+            count++;
+            sum += value;
+            if (value > max) {
+                max = value;
+            }
+        }
+
+        long count() {
+            return count;
+        }
+
+        long max() {
+            return max;
+        }
+
+        /**
+         * @return an upper bound of the given percentile, the end of its bucket
+         */
+        long percentile(double percentile) {
+            var rank = (long) Math.ceil(count * percentile / 100);
+            var seen = 0L;
+            for (var i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank && seen != 0) {
+                    return i == Long.SIZE - 1 ? Long.MAX_VALUE : Math.min((1L << (i + 1)) - 1, max);
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            if (count == 0) {
+                return "none";
+            }
+            return "avg=" + sum / count + " p50<=" + percentile(50) + " p99<=" + percentile(99) + " max=" + max;
+        }
+    }
+
+    private final String name;
+    private final Histogram selectWaitNanos = new Histogram();
+    private final Histogram keysPerSelect = new Histogram();
+    private final Histogram queueDepth = new Histogram();
+    private long selectStart;
+    private boolean waiting; // true until the first key selected by the current select
+    private long bytesRead;
+    private long bytesWritten;
+    private long frames;
+
+    LoopStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Called just before select
+     */
+    void beforeSelect() {
+        selectStart = System.nanoTime();
+        waiting = true;
+    }
+
+    /**
+     * Called for each key selected, the first one ends the select wait
+     */
+    void keySelected() {
+        if (waiting) {
+            selectWaitNanos.record(System.nanoTime() - selectStart);
+            waiting = false;
+        }
+    }
+
+    /**
+     * Called after select with the number of keys it processed
+     */
+    void afterSelect(int keys) {
+        if (waiting) {
+            // woken up without any key
+            selectWaitNanos.record(System.nanoTime() - selectStart);
+            waiting = false;
+        }
+        keysPerSelect.record(keys);
+    }
+
+    void read(int bytes) {
+        if (bytes > 0) {
+            bytesRead += bytes;
+        }
+    }
+
+    void written(long bytes) {
+        bytesWritten += bytes;
+    }
+
+    void frameDecoded() {
+        frames++;
+    }
+
+    /**
+     * Records the depth of a queue, e.g. a handoff or outbound queue, once per loop
+     */
+    void queueDepth(int depth) {
+        queueDepth.record(depth);
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + keysPerSelect.count() + " selects"
+                + ", select wait (ns) " + selectWaitNanos
+                + ", keys per select " + keysPerSelect
+                + ", queue depth " + queueDepth
+                + ", " + bytesRead + " bytes read, " + bytesWritten + " bytes written, " + frames + " frames";
+    }
+}
@@ -0,0 +1,45 @@
+package fr.upem.net.tcp.nonblocking;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoopStatsTest {
+
+    @Test
+    public void histogramPercentiles() {
+        var histogram = new LoopStats.Histogram();
+        for (var i = 0; i < 99; i++) {
+            histogram.record(5);
+        }
+        histogram.record(1_000);
+        assertEquals(100, histogram.count());
+        assertEquals(7, histogram.percentile(50));
+        assertEquals(7, histogram.percentile(99));
+        assertEquals(1_000, histogram.percentile(100));
+        assertEquals(1_000, histogram.max());
+    }
+
+    @Test
+    public void emptyHistogram() {
+        var histogram = new LoopStats.Histogram();
+        assertEquals(0, histogram.percentile(99));
+        assertEquals("none", histogram.toString());
+    }
+
+    @Test
+    public void selectWithoutKeys() {
+        var stats = new LoopStats("test");
+        stats.beforeSelect();
+        stats.afterSelect(0);
+        stats.beforeSelect();
+        stats.keySelected();
+        stats.keySelected();
+        stats.afterSelect(2);
+        stats.read(10);
+        stats.read(-1);
+        stats.written(4);
+        assertTrue(stats.toString().startsWith("test: 2 selects"));
+        assertTrue(stats.toString().contains("10 bytes read, 4 bytes written, 0 frames"));
+    }
+}
@@ -10,6 +10,20 @@ public record Message(String nickname, String message) {
         return nickname + ": " + message;
     }
 
+    /**
+     * Decodes a frame produced by {@link #toByteBuffer()}
+     *
+     * @param frame a whole frame in read-mode, left untouched
+     * @throws IllegalArgumentException if the frame is malformed or truncated
+     */
+    public static Message fromFrame(ByteBuffer frame) {
+        var reader = new MessageReader();
+        if (reader.processReadMode(frame.duplicate()) != Reader.ProcessStatus.DONE) {
+            throw new IllegalArgumentException("Malformed frame");
+        }
+        return reader.get();
+    }
+
     public ByteBuffer toByteBuffer() {
         var nickname = StandardCharsets.UTF_8.encode(this.nickname);
         var message = StandardCharsets.UTF_8.encode(this.message);
@@ -1,45 +1,33 @@
 package fr.upem.net.tcp.nonblocking;
 
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 
 public class MessageReader implements Reader<Message> {
 
-    private enum State {
-        DONE, WAITING, ERROR
-    }
-
-    private State state = State.WAITING;
-    private final StringReader stringReader = new StringReader();
-    private String nickname;
-    private String content;
+    private final MessageViewReader viewReader = new MessageViewReader();
     private Message message;
 
-
     @Override
     public ProcessStatus process(ByteBuffer buffer) {
-        if (state == State.DONE || state == State.ERROR) {
-            throw new IllegalStateException();
+        var status = viewReader.process(buffer);
+        if (status == ProcessStatus.DONE) {
+            message = viewReader.get().toMessage();
         }
-        var nicknameState = stringReader.process(buffer);
-        if (nicknameState != ProcessStatus.DONE) {
-            return nicknameState;
-        }
-        nickname = stringReader.get();
-        stringReader.reset();
-        var contentState = stringReader.process(buffer);
-        if (contentState != ProcessStatus.DONE) {
-            return contentState;
+        return status;
+    }
+
+    @Override
+    public ProcessStatus processReadMode(ByteBuffer buffer) {
+        var status = viewReader.processReadMode(buffer);
+        if (status == ProcessStatus.DONE) {
+            message = viewReader.get().toMessage();
         }
-        content = stringReader.get();
-        state = State.DONE;
-        message = new Message(nickname, content);
-        return ProcessStatus.DONE;
+        return status;
     }
 
     @Override
     public Message get() {
-        if (state != State.DONE) {
+        if (message == null) {
             throw new IllegalStateException();
         }
         return message;
@@ -47,7 +35,7 @@ public class MessageReader implements Reader<Message> {
 
     @Override
     public void reset() {
-        state = State.WAITING;
-        stringReader.reset();
+        viewReader.reset();
+        message = null;
     }
-}
\ No newline at end of file
+}
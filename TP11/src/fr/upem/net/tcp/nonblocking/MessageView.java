@@ -0,0 +1,20 @@
+package fr.upem.net.tcp.nonblocking;
+
+/**
+ * Message whose fields are views on the buffers of a {@link MessageViewReader}, only
+ * valid until the next call to reset on the reader.
+ */
+public record MessageView(CharSequence nickname, CharSequence message) {
+
+    /**
+     * @return a copy of this message which can be kept
+     */
+    public Message toMessage() {
+        return new Message(nickname.toString(), message.toString());
+    }
+
+    @Override
+    public String toString() {
+        return nickname + ": " + message;
+    }
+}
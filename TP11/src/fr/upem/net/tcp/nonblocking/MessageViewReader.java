@@ -0,0 +1,74 @@
+package fr.upem.net.tcp.nonblocking;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Variant of {@link MessageReader} which does not allocate anything per message:
+ * {@link #get()} always returns the same {@link MessageView}, whose fields are only
+ * valid until the next call to {@link #reset()}.
+ */
+public class MessageViewReader implements Reader<MessageView> {
+
+    private enum State {
+        DONE, WAITING_NICKNAME, WAITING_CONTENT, ERROR
+    }
+
+    private State state = State.WAITING_NICKNAME;
+    private final StringViewReader nicknameReader = new StringViewReader();
+    private final StringViewReader contentReader = new StringViewReader();
+    private MessageView message; // created on the first message, the views never change
+
+    @Override
+    public ProcessStatus process(ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            return processReadMode(buffer);
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    @Override
+    public ProcessStatus processReadMode(ByteBuffer buffer) {
+        if (state == State.DONE || state == State.ERROR) {
+            throw new IllegalStateException();
+        }
+        if (state == State.WAITING_NICKNAME) {
+            var status = nicknameReader.processReadMode(buffer);
+            if (status != ProcessStatus.DONE) {
+                if (status == ProcessStatus.ERROR) {
+                    state = State.ERROR;
+                }
+                return status;
+            }
+            state = State.WAITING_CONTENT;
+        }
+        var status = contentReader.processReadMode(buffer);
+        if (status != ProcessStatus.DONE) {
+            if (status == ProcessStatus.ERROR) {
+                state = State.ERROR;
+            }
+            return status;
+        }
+        state = State.DONE;
+        if (message == null) {
+            message = new MessageView(nicknameReader.get(), contentReader.get());
+        }
+        return ProcessStatus.DONE;
+    }
+
+    @Override
+    public MessageView get() {
+        if (state != State.DONE) {
+            throw new IllegalStateException();
+        }
+        return message;
+    }
+
+    @Override
+    public void reset() {
+        state = State.WAITING_NICKNAME;
+        nicknameReader.reset();
+        contentReader.reset();
+    }
+}
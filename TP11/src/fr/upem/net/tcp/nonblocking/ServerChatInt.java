@@ -1,11 +1,14 @@
 package fr.upem.net.tcp.nonblocking;
 
+import fr.upem.net.buffer.BufferAllocator;
+
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
 import java.util.ArrayDeque;
+import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -13,17 +16,22 @@ public class ServerChatInt {
 	static private class Context {
 		private final SelectionKey key;
 		private final SocketChannel sc;
-		private final ByteBuffer bufferIn = ByteBuffer.allocate(BUFFER_SIZE);
-		private final ByteBuffer bufferOut = ByteBuffer.allocate(BUFFER_SIZE);
+		private final ByteBuffer bufferIn;
+		private final ByteBuffer bufferOut;
+		private final BufferAllocator allocator;
 		private final ArrayDeque<Integer> queue = new ArrayDeque<>();
 		private final ServerChatInt server; // we could also have Context as an instance class, which would naturally
 											// give access to ServerChatInt.this
 		private boolean closed = false;
+		private boolean released = false;
 
 		private Context(ServerChatInt server, SelectionKey key) {
 			this.key = key;
 			this.sc = (SocketChannel) key.channel();
 			this.server = server;
+			this.allocator = server.allocator;
+			this.bufferIn = allocator.allocate(BUFFER_SIZE);
+			this.bufferOut = allocator.allocate(BUFFER_SIZE);
 		}
 
 		/**
@@ -37,6 +45,7 @@ public class ServerChatInt {
 			bufferIn.flip();
 			while (bufferIn.remaining() >= Integer.BYTES) {
 				var msg = bufferIn.getInt();
+				server.stats.frameDecoded();
 				server.broadcast(msg);
 			}
 			bufferIn.compact();
@@ -49,6 +58,7 @@ public class ServerChatInt {
 		 */
 		public void queueMessage(Integer msg) {
 			queue.offer(msg);
+			server.stats.queueDepth(queue.size());
 			processOut();
 			updateInterestOps();
 		}
@@ -93,6 +103,19 @@ public class ServerChatInt {
 			} catch (IOException e) {
 				// ignore exception
 			}
+			releaseBuffers();
+		}
+
+		/**
+		 * Hand the buffers back to the allocator, they must not be used afterwards
+		 */
+		private void releaseBuffers() {
+			if (released) {
+				return;
+			}
+			released = true;
+			allocator.release(bufferIn);
+			allocator.release(bufferOut);
 		}
 
 		/**
@@ -105,6 +128,7 @@ public class ServerChatInt {
 		 */
 		private void doRead() throws IOException {
 			var bytes = sc.read(bufferIn);
+			server.stats.read(bytes);
 			if (bytes == 0) {
 				logger.severe("Selector lied on read");
 				return;
@@ -131,6 +155,7 @@ public class ServerChatInt {
 				return;
 			}
 			var bytes = sc.write(bufferOut);
+			server.stats.written(bytes);
 			bufferOut.compact();
 			if (bytes == 0) {
 				logger.severe("Selector lied on write");
@@ -146,30 +171,52 @@ public class ServerChatInt {
 
 	private final ServerSocketChannel serverSocketChannel;
 	private final Selector selector;
+	private final BufferAllocator allocator;
+	private final LoopStats stats = new LoopStats("ServerChatInt");
 
 	public ServerChatInt(int port) throws IOException {
+		this(port, BufferAllocator.heap());
+	}
+
+	public ServerChatInt(int port, BufferAllocator allocator) throws IOException {
+		this.allocator = Objects.requireNonNull(allocator);
 		serverSocketChannel = ServerSocketChannel.open();
 		serverSocketChannel.bind(new InetSocketAddress(port));
 		selector = Selector.open();
 	}
 
+	/**
+	 * @return a summary of the activity of the selector loop
+	 */
+	public String stats() {
+		return stats.toString();
+	}
+
 	public void launch() throws IOException {
 		serverSocketChannel.configureBlocking(false);
 		serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
 		while (!Thread.interrupted()) {
-			Helpers.printKeys(selector); // for debug
-			System.out.println("Starting select");
+			if (Helpers.DEBUG) {
+				Helpers.printKeys(selector);
+				System.out.println("Starting select");
+			}
 			try {
-				selector.select(this::treatKey);
+				stats.beforeSelect();
+				stats.afterSelect(selector.select(this::treatKey));
 			} catch (UncheckedIOException tunneled) {
 				throw tunneled.getCause();
 			}
-			System.out.println("Select finished");
+			if (Helpers.DEBUG) {
+				System.out.println("Select finished");
+			}
 		}
 	}
 
 	private void treatKey(SelectionKey key) {
-		Helpers.printSelectedKey(key); // for debug
+		stats.keySelected();
+		if (Helpers.DEBUG) {
+			Helpers.printSelectedKey(key);
+		}
 		try {
 			if (key.isValid() && key.isAcceptable()) {
 				doAccept(key);
@@ -187,7 +234,7 @@ public class ServerChatInt {
 			}
 		} catch (IOException e) {
 			logger.log(Level.INFO, "Connection closed with client due to IOException", e);
-			silentlyClose(key);
+			((Context) key.attachment()).silentlyClose();
 		}
 	}
 
@@ -203,14 +250,6 @@ public class ServerChatInt {
 		k.attach(new Context(this, k));
 	}
 
-	private void silentlyClose(SelectionKey key) {
-		Channel sc = (Channel) key.channel();
-		try {
-			sc.close();
-		} catch (IOException e) {
-			// ignore exception
-		}
-	}
 
 	/**
 	 * Add a message to all connected clients queue
@@ -219,7 +258,7 @@ public class ServerChatInt {
 	 */
 	private void broadcast(Integer msg) {
 		for (var key : selector.keys()) {
-			if (key.channel() != serverSocketChannel) {
+			if (key.channel() != serverSocketChannel && key.isValid()) {
 				((Context) key.attachment()).queueMessage(msg);
 			}
 		}
@@ -230,7 +269,7 @@ public class ServerChatInt {
 			usage();
 			return;
 		}
-		new ServerChatInt(Integer.parseInt(args[0])).launch();
+		new ServerChatInt(Integer.parseInt(args[0]), BufferAllocator.fromSystemProperties()).launch();
 	}
 
 	private static void usage() {
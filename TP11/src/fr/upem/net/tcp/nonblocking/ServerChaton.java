@@ -1,51 +1,90 @@
 package fr.upem.net.tcp.nonblocking;
 
+import fr.upem.net.buffer.BufferAllocator;
+
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channel;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static java.nio.charset.StandardCharsets.UTF_8;
-
 public class ServerChaton {
     static private class Context {
         private final SelectionKey key;
         private final SocketChannel sc;
-        private final ByteBuffer bufferIn = ByteBuffer.allocate(BUFFER_SIZE);
-        private final ByteBuffer bufferOut = ByteBuffer.allocate(BUFFER_SIZE);
-        private final MessageReader messageReader = new MessageReader();
-        private final ArrayDeque<ByteBuffer> queue = new ArrayDeque<>();
-        private final ServerChaton server; // we could also have Context as an instance class, which would naturally
-        // give access to ServerChatInt.this
+        private final ByteBuffer bufferIn;
+        private final FrameReader frameReader = new FrameReader(); // frames are relayed, never decoded
+        private final Reactor reactor; // the reactor owning key, broadcasts go through it
+        private final ByteBuffer[] views; // our own windows on the broadcast log of the reactor
+        private long cursor; // offset in the broadcast log of the next byte to send
+        private long gapStart = NO_GAP; // bytes of the log between gapStart and gapEnd are not for us
+        private long gapEnd;
+        private long overBudgetSince = NO_GAP; // System.nanoTime() when we went over budget
+        private long policyHits;
+        private long droppedBytes;
+        private final TimerWheel.Timer idleTimer; // rescheduled on each read or write
+        private final TimerWheel.Timer stallTimer; // scheduled while we have pending bytes
         private boolean closed = false;
+        private boolean released = false;
 
-        private Context(ServerChaton server, SelectionKey key) {
+        private Context(Reactor reactor, SelectionKey key) {
             this.key = key;
             this.sc = (SocketChannel) key.channel();
-            this.server = server;
+            this.reactor = reactor;
+            this.bufferIn = reactor.server.allocator.allocate(BUFFER_SIZE);
+            this.views = reactor.log.views();
+            this.cursor = reactor.log.tail();
+            this.idleTimer = reactor.timers.newTimer(this::onIdle);
+            this.stallTimer = reactor.timers.newTimer(this::onWriteStall);
+            idleTimer.schedule(IDLE_TIMEOUT_NANOS);
+        }
+
+        private void onIdle() {
+            logger.info("Client " + sc.socket().getRemoteSocketAddress() + " idle for too long, closing connection");
+            silentlyClose();
+        }
+
+        private void onWriteStall() {
+            logger.info("Client " + sc.socket().getRemoteSocketAddress()
+                    + " did not accept any byte for too long, closing connection");
+            silentlyClose();
         }
 
         /**
          * Process the content of bufferIn
          * <p>
          * The convention is that bufferIn is in write-mode before the call to process and
-         * after the call
+         * after the call. The frames are read with bufferIn in read-mode, so it is only
+         * compacted once all of them were processed.
          */
         private void processIn() {
-            while (bufferIn.hasRemaining()) {
-                switch (messageReader.process(bufferIn)) {
+            bufferIn.flip();
+            for (;;) {
+                switch (frameReader.processReadMode(bufferIn)) {
                     case DONE -> {
-                        server.broadcast(messageReader.get());
-                        messageReader.reset();
+                        var frame = frameReader.get();
+                        reactor.stats.frameDecoded();
+                        if (logger.isLoggable(Level.FINE)) {
+                            logger.fine("Relaying " + Message.fromFrame(frame));
+                        }
+                        reactor.server.broadcast(reactor, frame);
+                        frameReader.reset();
+                        if (!sc.isOpen()) {
+                            return; // closed by its own broadcast, bufferIn is released
+                        }
                     }
                     case ERROR -> {
                         logger.severe("Malformed message packet");
@@ -53,6 +92,7 @@ public class ServerChaton {
                         return;
                     }
                     case REFILL -> {
+                        bufferIn.compact();
                         return;
                     }
                 }
@@ -60,62 +100,125 @@ public class ServerChaton {
         }
 
         /**
-         * Add a message to the message queue, tries to fill bufferOut and updateInterestOps
-         *
-         * @param msg
+         * @return the number of bytes of the broadcast log we still have to send
          */
-        public void queueMessage(Message msg) {
-            var nickname = UTF_8.encode(msg.nickname());
-            var content = UTF_8.encode(msg.message());
-
-            var buffer = ByteBuffer.allocate(2 * Integer.BYTES + nickname.remaining() + content.remaining());
-            buffer.putInt(nickname.remaining());
-            buffer.put(nickname);
-            buffer.putInt(content.remaining());
-            buffer.put(content);
-            buffer.flip();
-
-            queue.offer(buffer);
-            processOut();
-            updateInterestOps();
+        private long pending() {
+            var tail = reactor.log.tail();
+            if (gapStart == NO_GAP) {
+                return tail - cursor;
+            }
+            return (gapStart - cursor) + (tail - gapEnd);
+        }
+
+        /**
+         * Jumps over the gap once all the bytes before it were sent
+         */
+        private void skipGap() {
+            if (gapStart != NO_GAP && cursor == gapStart) {
+                cursor = gapEnd;
+                gapStart = NO_GAP;
+            }
         }
 
         /**
-         * Try to fill bufferOut from the message queue
+         * Called after a frame of length bytes was appended to the broadcast log of the
+         * reactor. Applies the slow consumer policy if we went over our outbound budget
+         * and updateInterestOps
          */
-        private void processOut() {
-            while (bufferOut.hasRemaining() && !queue.isEmpty()) {
-                var msg = queue.peek();
-                if (!msg.hasRemaining()) {
-                    queue.pop();
-                    continue;
+        private void onAppend(int length) {
+            var log = reactor.log;
+            if (cursor < log.head()) {
+                logger.info("Client " + sc.socket().getRemoteSocketAddress()
+                        + " overrun by the broadcast log, closing connection");
+                silentlyClose();
+                return;
+            }
+            var server = reactor.server;
+            if (server.policy == SlowConsumerPolicy.DROP_NEW && gapStart != NO_GAP) {
+                // once we drop, we keep on dropping until the client caught up with the gap
+                gapEnd = log.tail();
+                droppedBytes += length;
+            } else if (pending() > server.outboundBudget) {
+                applyPolicy(length);
+                if (!sc.isOpen()) {
+                    return;
                 }
-                if (bufferOut.remaining() >= msg.remaining()) {
-                    bufferOut.put(msg);
-                } else {
-                    var oldLimit = msg.limit();
-                    msg.limit(bufferOut.remaining());
-                    bufferOut.put(msg);
-                    msg.limit(oldLimit);
+            } else {
+                overBudgetSince = NO_GAP;
+            }
+            updateInterestOps();
+        }
+
+        private void applyPolicy(int length) {
+            var server = reactor.server;
+            var log = reactor.log;
+            var now = System.nanoTime();
+            policyHits++;
+            if (overBudgetSince == NO_GAP) {
+                overBudgetSince = now;
+                logger.info("Client " + sc.socket().getRemoteSocketAddress() + " over its outbound budget ("
+                        + policyHits + " hits, " + droppedBytes + " bytes dropped), applying " + server.policy);
+            }
+            switch (server.policy) {
+                case DROP_OLDEST -> {
+                    // a frame we started to send must be sent entirely
+                    var keep = gapStart != NO_GAP ? gapStart
+                            : log.isFrameStart(cursor) ? cursor : log.nextFrameStart(cursor);
+                    var from = gapStart != NO_GAP ? gapEnd : keep;
+                    var skipTo = log.nextFrameStart(Math.max(from, log.tail() - server.outboundBudget + (keep - cursor)));
+                    droppedBytes += skipTo - from;
+                    if (keep == cursor) {
+                        cursor = skipTo;
+                        gapStart = NO_GAP;
+                    } else {
+                        gapStart = keep;
+                        gapEnd = skipTo;
+                    }
+                }
+                case DROP_NEW -> {
+                    var frameStart = log.tail() - length;
+                    droppedBytes += length;
+                    if (cursor == frameStart) {
+                        cursor = log.tail();
+                    } else {
+                        gapStart = frameStart;
+                        gapEnd = log.tail();
+                    }
+                }
+                case DISCONNECT -> {
+                    if (now - overBudgetSince >= server.graceNanos) {
+                        logger.info("Client " + sc.socket().getRemoteSocketAddress()
+                                + " over its outbound budget for too long, closing connection");
+                        silentlyClose();
+                    }
                 }
             }
         }
 
         /**
          * Update the interestOps of the key looking only at values of the boolean
-         * closed and of both ByteBuffers.
+         * closed, of bufferIn and of our pending bytes in the broadcast log. The write
+         * stall timer runs while we have pending bytes.
          * <p>
-         * The convention is that both buffers are in write-mode before the call to
+         * The convention is that bufferIn is in write-mode before the call to
          * updateInterestOps and after the call. Also it is assumed that process has
          * been be called just before updateInterestOps.
          */
         private void updateInterestOps() {
+            if (!sc.isOpen()) {
+                return; // closed while processing bufferIn, which may already be released
+            }
             var interestOps = 0;
             if (!closed && bufferIn.hasRemaining()) {
                 interestOps |= SelectionKey.OP_READ;
             }
-            if (bufferOut.position() != 0) {
+            if (pending() != 0) {
                 interestOps |= SelectionKey.OP_WRITE;
+                if (!stallTimer.isScheduled()) {
+                    stallTimer.schedule(WRITE_STALL_TIMEOUT_NANOS);
+                }
+            } else {
+                stallTimer.cancel();
             }
             if (interestOps == 0) {
                 silentlyClose();
@@ -125,152 +228,417 @@ public class ServerChaton {
         }
 
         private void silentlyClose() {
+            if (policyHits != 0 && sc.isOpen()) {
+                logger.info("Client " + sc.socket().getRemoteSocketAddress() + " went over its outbound budget "
+                        + policyHits + " times, " + droppedBytes + " bytes dropped");
+            }
             try {
                 sc.close();
             } catch (IOException e) {
                 // ignore exception
             }
+            idleTimer.cancel();
+            stallTimer.cancel();
+            releaseBuffers();
+        }
+
+        /**
+         * Hand bufferIn back to the allocator, it must not be used afterwards
+         */
+        private void releaseBuffers() {
+            if (released) {
+                return;
+            }
+            released = true;
+            reactor.server.allocator.release(bufferIn);
         }
 
         /**
          * Performs the read action on sc
          * <p>
-         * The convention is that both buffers are in write-mode before the call to
+         * The convention is that bufferIn is in write-mode before the call to
          * doRead and after the call
          *
          * @throws IOException
          */
         private void doRead() throws IOException {
             var bytes = sc.read(bufferIn);
+            reactor.stats.read(bytes);
             if (bytes == 0) {
                 logger.severe("Selector lied on read");
                 return;
             }
             if (bytes == -1) {
                 closed = true;
+            } else {
+                idleTimer.schedule(IDLE_TIMEOUT_NANOS);
             }
             processIn();
             updateInterestOps();
         }
 
         /**
-         * Performs the write action on sc
+         * Performs the write action on sc, straight from the broadcast log with a
+         * single gathering write even when the bytes to send wrap around the ring
          * <p>
-         * The convention is that both buffers are in write-mode before the call to
+         * The convention is that bufferIn is in write-mode before the call to
          * doWrite and after the call
          *
          * @throws IOException
          */
         private void doWrite() throws IOException {
-            bufferOut.flip();
-            if (closed && !bufferOut.hasRemaining()) {
+            var log = reactor.log;
+            if (closed && pending() == 0) {
                 silentlyClose();
                 return;
             }
-            var bytes = sc.write(bufferOut);
-            bufferOut.compact();
+            var end = gapStart == NO_GAP ? log.tail() : gapStart;
+            var bytes = sc.write(views, 0, log.segments(cursor, end, views));
+            reactor.stats.written(bytes);
+            cursor += bytes;
+            skipGap();
             if (bytes == 0) {
                 logger.severe("Selector lied on write");
+            } else {
+                idleTimer.schedule(IDLE_TIMEOUT_NANOS);
+                stallTimer.cancel(); // rescheduled by updateInterestOps if needed
             }
-            processOut();
             updateInterestOps();
         }
 
     }
 
+    /**
+     * A selector loop owning its own set of Contexts, and a timer wheel for their idle
+     * and write stall timeouts, which sets the timeout of select.
+     * <p>
+     * Other threads only talk to a reactor through its two handoff queues, followed by
+     * a wakeup of its selector: the reactor thread is the only one touching its keys.
+     */
+    static private class Reactor {
+        private final ServerChaton server;
+        private final Selector selector;
+        private final ConcurrentLinkedQueue<SocketChannel> pendingChannels = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<ByteBuffer> pendingFrames = new ConcurrentLinkedQueue<>();
+        private final BroadcastLog log = new BroadcastLog(LOG_CAPACITY);
+        private final LoopStats stats;
+        private final TimerWheel timers = new TimerWheel(TIMER_TICK_NANOS, TIMER_SLOTS);
+        private final TimerWheel.Timer statsTimer = timers.newTimer(this::logStats);
+
+        private Reactor(ServerChaton server, String name) throws IOException {
+            this.server = server;
+            this.selector = Selector.open();
+            this.stats = new LoopStats(name);
+        }
+
+        private void logStats() {
+            logger.fine(stats.toString());
+            statsTimer.schedule(STATS_PERIOD_NANOS);
+        }
+
+        /**
+         * Hand a freshly accepted channel over to this reactor, may be called from any thread
+         */
+        private void handOff(SocketChannel sc) {
+            pendingChannels.offer(sc);
+            selector.wakeup();
+        }
+
+        /**
+         * Hand a frame broadcast by another reactor over to this reactor, may be called
+         * from any thread. As each reactor only has one thread, messages from a given
+         * sender are queued, and thus delivered, in the order they were received.
+         */
+        private void handOff(ByteBuffer frame) {
+            pendingFrames.offer(frame);
+            selector.wakeup();
+        }
+
+        private void launch() throws IOException {
+            if (logger.isLoggable(Level.FINE)) {
+                statsTimer.schedule(STATS_PERIOD_NANOS);
+            }
+            while (!Thread.interrupted()) {
+                if (Helpers.DEBUG) {
+                    Helpers.printKeys(selector);
+                    System.out.println("Starting select");
+                }
+                try {
+                    stats.beforeSelect();
+                    stats.afterSelect(selector.select(this::treatKey, timers.selectTimeout(System.nanoTime())));
+                    processHandOffs();
+                    timers.expire(System.nanoTime());
+                } catch (UncheckedIOException tunneled) {
+                    throw tunneled.getCause();
+                }
+                if (Helpers.DEBUG) {
+                    System.out.println("Select finished");
+                }
+            }
+        }
+
+        /**
+         * Processes the channels and frames handed off by the other threads
+         */
+        private void processHandOffs() {
+            SocketChannel sc;
+            while ((sc = pendingChannels.poll()) != null) {
+                try {
+                    register(sc);
+                } catch (IOException e) {
+                    logger.log(Level.INFO, "Could not register accepted client", e);
+                    silentlyClose(sc);
+                }
+            }
+            ByteBuffer frame;
+            var frames = 0;
+            while ((frame = pendingFrames.poll()) != null) {
+                deliver(frame);
+                frames++;
+            }
+            stats.queueDepth(frames);
+        }
+
+        private void register(SocketChannel sc) throws IOException {
+            sc.configureBlocking(false);
+            var k = sc.register(selector, SelectionKey.OP_READ);
+            k.attach(new Context(this, k));
+        }
+
+        private void treatKey(SelectionKey key) {
+            stats.keySelected();
+            if (Helpers.DEBUG) {
+                Helpers.printSelectedKey(key);
+            }
+            try {
+                if (key.isValid() && key.isAcceptable()) {
+                    doAccept(key);
+                }
+            } catch (IOException ioe) {
+                // lambda call in select requires to tunnel IOException
+                throw new UncheckedIOException(ioe);
+            }
+            try {
+                if (key.isValid() && key.isWritable()) {
+                    ((Context) key.attachment()).doWrite();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    ((Context) key.attachment()).doRead();
+                }
+            } catch (IOException e) {
+                logger.log(Level.INFO, "Connection closed with client due to IOException", e);
+                ((Context) key.attachment()).silentlyClose();
+            }
+        }
+
+        private void doAccept(SelectionKey key) throws IOException {
+            var ssc = (ServerSocketChannel) key.channel();
+            var sc = ssc.accept();
+            if (sc == null) {
+                logger.severe("Selector lied");
+                return;
+            }
+            register(sc);
+        }
+
+        /**
+         * Append a frame to the broadcast log, read by all the clients owned by this reactor
+         *
+         * @param frame an encoded message in read-mode, left untouched
+         */
+        private void deliver(ByteBuffer frame) {
+            log.append(frame);
+            for (var key : selector.keys()) {
+                if (key.attachment() instanceof Context context && key.isValid()) {
+                    context.onAppend(frame.remaining());
+                }
+            }
+        }
+    }
+
+    /**
+     * What to do with a client having more pending bytes than its outbound budget
+     */
+    public enum SlowConsumerPolicy {
+        /**
+         * Skip the oldest frames not yet sent to the client, a frame already partially
+         * sent is always sent entirely
+         */
+        DROP_OLDEST,
+        /**
+         * Do not send the new frames to the client until it sent everything it had
+         * pending when it went over budget
+         */
+        DROP_NEW,
+        /**
+         * Close the connection if the client is still over budget after a grace period
+         */
+        DISCONNECT
+    }
+
     private static final int BUFFER_SIZE = 1_024;
+    private static final int LOG_CAPACITY = 1 << 20;
+    private static final int MAX_FRAME_SIZE = FrameReader.MAX_FRAME_SIZE;
+    private static final int DEFAULT_OUTBOUND_BUDGET = 64 * 1_024;
+    private static final long DEFAULT_GRACE_MILLIS = 5_000;
+    private static final long NO_GAP = -1;
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final long WRITE_STALL_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final long STATS_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long TIMER_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int TIMER_SLOTS = 512;
     private static final Logger logger = Logger.getLogger(ServerChaton.class.getName());
 
     private final ServerSocketChannel serverSocketChannel;
-    private final Selector selector;
+    private final List<Reactor> reactors;
+    private final SlowConsumerPolicy policy;
+    private final int outboundBudget;
+    private final long graceNanos;
+    private final BufferAllocator allocator;
 
     public ServerChaton(int port) throws IOException {
+        this(port, 1);
+    }
+
+    public ServerChaton(int port, int reactors) throws IOException {
+        this(port, reactors, SlowConsumerPolicy.DROP_OLDEST, DEFAULT_OUTBOUND_BUDGET, DEFAULT_GRACE_MILLIS,
+                BufferAllocator.heap());
+    }
+
+    /**
+     * @param port           port to listen on
+     * @param reactors       number of selector threads sharing the clients. With a single
+     *                       reactor, accept is done on the same selector as the clients.
+     * @param policy         what to do with the clients going over their outbound budget
+     * @param outboundBudget maximum number of bytes waiting to be sent to a client
+     * @param graceMillis    how long a client may stay over budget with the DISCONNECT policy
+     * @param allocator      source of the per client buffers
+     */
+    public ServerChaton(int port, int reactors, SlowConsumerPolicy policy, int outboundBudget, long graceMillis,
+                        BufferAllocator allocator) throws IOException {
+        if (reactors < 1) {
+            throw new IllegalArgumentException("At least one reactor is needed");
+        }
+        if (outboundBudget < MAX_FRAME_SIZE || outboundBudget > LOG_CAPACITY - MAX_FRAME_SIZE) {
+            throw new IllegalArgumentException("Outbound budget must be between " + MAX_FRAME_SIZE + " and "
+                    + (LOG_CAPACITY - MAX_FRAME_SIZE) + " bytes");
+        }
+        if (graceMillis < 0) {
+            throw new IllegalArgumentException("Grace period must be positive");
+        }
+        this.policy = Objects.requireNonNull(policy);
+        this.outboundBudget = outboundBudget;
+        this.graceNanos = TimeUnit.MILLISECONDS.toNanos(graceMillis);
+        this.allocator = Objects.requireNonNull(allocator);
         serverSocketChannel = ServerSocketChannel.open();
         serverSocketChannel.bind(new InetSocketAddress(port));
-        selector = Selector.open();
+        var list = new ArrayList<Reactor>(reactors);
+        for (var i = 0; i < reactors; i++) {
+            list.add(new Reactor(this, "reactor-" + i));
+        }
+        this.reactors = List.copyOf(list);
     }
 
-    public void launch() throws IOException {
-        serverSocketChannel.configureBlocking(false);
-        serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
-        while (!Thread.interrupted()) {
-            Helpers.printKeys(selector); // for debug
-            System.out.println("Starting select");
-            try {
-                selector.select(this::treatKey);
-            } catch (UncheckedIOException tunneled) {
-                throw tunneled.getCause();
-            }
-            System.out.println("Select finished");
+    /**
+     * @return a summary of the activity of the selector loop of each reactor
+     */
+    public String stats() {
+        var joiner = new StringJoiner("\n");
+        for (var reactor : reactors) {
+            joiner.add(reactor.stats.toString());
         }
+        return joiner.toString();
     }
 
-    private void treatKey(SelectionKey key) {
-        Helpers.printSelectedKey(key); // for debug
-        try {
-            if (key.isValid() && key.isAcceptable()) {
-                doAccept(key);
-            }
-        } catch (IOException ioe) {
-            // lambda call in select requires to tunnel IOException
-            throw new UncheckedIOException(ioe);
+    public void launch() throws IOException {
+        if (reactors.size() == 1) {
+            var reactor = reactors.get(0);
+            serverSocketChannel.configureBlocking(false);
+            serverSocketChannel.register(reactor.selector, SelectionKey.OP_ACCEPT);
+            reactor.launch();
+            return;
+        }
+        var threads = new ArrayList<Thread>(reactors.size());
+        for (var reactor : reactors) {
+            var thread = new Thread(() -> {
+                try {
+                    reactor.launch();
+                } catch (IOException ioe) {
+                    logger.log(Level.SEVERE, "Reactor " + Thread.currentThread().getName() + " terminated unexpectedly", ioe);
+                    silentlyClose(serverSocketChannel);
+                }
+            }, "reactor-" + threads.size());
+            threads.add(thread);
+            thread.start();
         }
         try {
-            if (key.isValid() && key.isWritable()) {
-                ((Context) key.attachment()).doWrite();
-            }
-            if (key.isValid() && key.isReadable()) {
-                ((Context) key.attachment()).doRead();
-            }
-        } catch (IOException e) {
-            logger.log(Level.INFO, "Connection closed with client due to IOException", e);
-            silentlyClose(key);
+            acceptLoop();
+        } finally {
+            threads.forEach(Thread::interrupt);
         }
     }
 
-    private void doAccept(SelectionKey key) throws IOException {
-        var ssc = (ServerSocketChannel) key.channel();
-        var sc = ssc.accept();
-        if (sc == null) {
-            logger.severe("Selector lied");
-            return;
+    /**
+     * Blocking accept loop spreading the clients across the reactors in a round-robin fashion
+     */
+    private void acceptLoop() throws IOException {
+        var next = 0;
+        while (!Thread.interrupted()) {
+            SocketChannel sc;
+            try {
+                sc = serverSocketChannel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            reactors.get(next).handOff(sc);
+            next = (next + 1) % reactors.size();
         }
-        sc.configureBlocking(false);
-        var k = sc.register(selector, SelectionKey.OP_READ);
-        k.attach(new Context(this, k));
     }
 
-    private void silentlyClose(SelectionKey key) {
-        var sc = key.channel();
+    private static void silentlyClose(Channel channel) {
         try {
-            sc.close();
+            channel.close();
         } catch (IOException e) {
             // ignore exception
         }
     }
 
     /**
-     * Add a message to all connected clients queue
+     * Send a frame to all connected clients. The frame is appended directly to the log
+     * of the origin reactor, the other reactors get a single copy through their handoff
+     * queue.
      *
-     * @param msg
+     * @param origin the reactor on which the frame was received
+     * @param frame  the raw bytes of a message in read-mode, left untouched, may be a
+     *               view on the bufferIn of the sender
      */
-    private void broadcast(Message msg) {
-        for (var key : selector.keys()) {
-            if (key.channel() != serverSocketChannel) {
-                ((Context) key.attachment()).queueMessage(msg);
+    private void broadcast(Reactor origin, ByteBuffer frame) {
+        if (reactors.size() > 1) {
+            // copied before delivering, which may close the sender and release its bufferIn
+            var copy = ByteBuffer.allocate(frame.remaining()).put(frame.duplicate()).flip();
+            for (var reactor : reactors) {
+                if (reactor != origin) {
+                    reactor.handOff(copy);
+                }
             }
         }
+        origin.deliver(frame);
     }
 
     public static void main(String[] args) throws NumberFormatException, IOException {
-        if (args.length != 1) {
+        if (args.length < 1 || args.length > 5) {
             usage();
             return;
         }
-        new ServerChaton(Integer.parseInt(args[0])).launch();
+        var port = Integer.parseInt(args[0]);
+        var reactors = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        var policy = args.length > 2 ? SlowConsumerPolicy.valueOf(args[2].toUpperCase()) : SlowConsumerPolicy.DROP_OLDEST;
+        var budget = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_OUTBOUND_BUDGET;
+        var grace = args.length > 4 ? Long.parseLong(args[4]) : DEFAULT_GRACE_MILLIS;
+        new ServerChaton(port, reactors, policy, budget, grace, BufferAllocator.fromSystemProperties()).launch();
     }
 
     private static void usage() {
-        System.out.println("Usage : ServerSumBetter port");
+        System.out.println("Usage : ServerChaton port [reactors [DROP_OLDEST|DROP_NEW|DISCONNECT [budget [graceMillis]]]]");
     }
-}
\ No newline at end of file
+}
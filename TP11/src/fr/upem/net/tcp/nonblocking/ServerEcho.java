@@ -1,10 +1,13 @@
 package fr.upem.net.tcp.nonblocking;
 
+import fr.upem.net.buffer.BufferAllocator;
+
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
+import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,12 +15,18 @@ public class ServerEcho {
     static private class Context {
         private final SelectionKey key;
         private final SocketChannel sc;
-        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ByteBuffer buffer;
+        private final BufferAllocator allocator;
+        private final LoopStats stats;
         private boolean closed = false;
+        private boolean released = false;
 
-        private Context(SelectionKey key) {
+        private Context(SelectionKey key, BufferAllocator allocator, LoopStats stats) {
             this.key = key;
             this.sc = (SocketChannel) key.channel();
+            this.allocator = allocator;
+            this.stats = stats;
+            this.buffer = allocator.allocate(BUFFER_SIZE);
         }
 
         /**
@@ -46,6 +55,7 @@ public class ServerEcho {
          */
         private void doRead() throws IOException {
             var bytes = sc.read(buffer);
+            stats.read(bytes);
             if (bytes == 0) {
                 logger.severe("Selector lied on read");
             }
@@ -71,6 +81,7 @@ public class ServerEcho {
                 return;
             }
             var bytes = sc.write(buffer);
+            stats.written(bytes);
             buffer.compact();
             if (bytes == 0) {
                 logger.severe("Selector lied on write");
@@ -84,6 +95,18 @@ public class ServerEcho {
             } catch (IOException e) {
                 // ignore exception
             }
+            releaseBuffers();
+        }
+
+        /**
+         * Hand the buffers back to the allocator, they must not be used afterwards
+         */
+        private void releaseBuffers() {
+            if (released) {
+                return;
+            }
+            released = true;
+            allocator.release(buffer);
         }
     }
 
@@ -92,30 +115,52 @@ public class ServerEcho {
 
     private final ServerSocketChannel serverSocketChannel;
     private final Selector selector;
+    private final BufferAllocator allocator;
+    private final LoopStats stats = new LoopStats("ServerEcho");
 
     public ServerEcho(int port) throws IOException {
+        this(port, BufferAllocator.heap());
+    }
+
+    public ServerEcho(int port, BufferAllocator allocator) throws IOException {
+        this.allocator = Objects.requireNonNull(allocator);
         serverSocketChannel = ServerSocketChannel.open();
         serverSocketChannel.bind(new InetSocketAddress(port));
         selector = Selector.open();
     }
 
+    /**
+     * @return a summary of the activity of the selector loop
+     */
+    public String stats() {
+        return stats.toString();
+    }
+
     public void launch() throws IOException {
         serverSocketChannel.configureBlocking(false);
         serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
         while (!Thread.interrupted()) {
-            Helpers.printKeys(selector); // for debug
-            System.out.println("Starting select");
+            if (Helpers.DEBUG) {
+                Helpers.printKeys(selector);
+                System.out.println("Starting select");
+            }
             try {
-                selector.select(this::treatKey);
+                stats.beforeSelect();
+                stats.afterSelect(selector.select(this::treatKey));
             } catch (UncheckedIOException tunneled) {
                 throw tunneled.getCause();
             }
-            System.out.println("Select finished");
+            if (Helpers.DEBUG) {
+                System.out.println("Select finished");
+            }
         }
     }
 
     private void treatKey(SelectionKey key) {
-        Helpers.printSelectedKey(key); // for debug
+        stats.keySelected();
+        if (Helpers.DEBUG) {
+            Helpers.printSelectedKey(key);
+        }
         try {
             if (key.isValid() && key.isAcceptable()) {
                 doAccept(key);
@@ -133,7 +178,7 @@ public class ServerEcho {
             }
         } catch (IOException e) {
             logger.log(Level.INFO, "Connection closed with client due to IOException", e);
-            silentlyClose(key);
+            ((Context) key.attachment()).silentlyClose();
         }
     }
 
@@ -146,16 +191,7 @@ public class ServerEcho {
         }
         sc.configureBlocking(false);
         var k = sc.register(selector, SelectionKey.OP_READ);
-        k.attach(new Context(k));
-    }
-
-    private void silentlyClose(SelectionKey key) {
-        var sc = (Channel) key.channel();
-        try {
-            sc.close();
-        } catch (IOException e) {
-            // ignore exception
-        }
+        k.attach(new Context(k, allocator, stats));
     }
 
     public static void main(String[] args) throws NumberFormatException, IOException {
@@ -163,7 +199,7 @@ public class ServerEcho {
             usage();
             return;
         }
-        new ServerEcho(Integer.parseInt(args[0])).launch();
+        new ServerEcho(Integer.parseInt(args[0]), BufferAllocator.fromSystemProperties()).launch();
     }
 
     private static void usage() {
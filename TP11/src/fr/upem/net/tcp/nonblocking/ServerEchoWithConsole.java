@@ -1,5 +1,7 @@
 package fr.upem.net.tcp.nonblocking;
 
+import fr.upem.net.buffer.BufferAllocator;
+
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
@@ -9,6 +11,7 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Objects;
 import java.util.Scanner;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
@@ -19,12 +22,18 @@ public class ServerEchoWithConsole {
     static private class Context {
         private final SelectionKey key;
         private final SocketChannel sc;
-        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ByteBuffer buffer;
+        private final BufferAllocator allocator;
+        private final LoopStats stats;
         private boolean closed = false;
+        private boolean released = false;
 
-        private Context(SelectionKey key) {
+        private Context(SelectionKey key, BufferAllocator allocator, LoopStats stats) {
             this.key = key;
             this.sc = (SocketChannel) key.channel();
+            this.allocator = allocator;
+            this.stats = stats;
+            this.buffer = allocator.allocate(BUFFER_SIZE);
         }
 
         /**
@@ -53,6 +62,7 @@ public class ServerEchoWithConsole {
          */
         private void doRead() throws IOException {
             var bytes = sc.read(buffer);
+            stats.read(bytes);
             if (bytes == 0) {
                 logger.severe("Selector lied on read");
             }
@@ -78,6 +88,7 @@ public class ServerEchoWithConsole {
                 return;
             }
             var bytes = sc.write(buffer);
+            stats.written(bytes);
             buffer.compact();
             if (bytes == 0) {
                 logger.severe("Selector lied on write");
@@ -91,6 +102,18 @@ public class ServerEchoWithConsole {
             } catch (IOException e) {
                 // ignore exception
             }
+            releaseBuffers();
+        }
+
+        /**
+         * Hand the buffers back to the allocator, they must not be used afterwards
+         */
+        private void releaseBuffers() {
+            if (released) {
+                return;
+            }
+            released = true;
+            allocator.release(buffer);
         }
     }
 
@@ -99,10 +122,17 @@ public class ServerEchoWithConsole {
 
     private final ServerSocketChannel serverSocketChannel;
     private final Selector selector;
+    private final BufferAllocator allocator;
+    private final LoopStats stats = new LoopStats("ServerEchoWithConsole");
     private final Thread console;
     private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(10);
 
     public ServerEchoWithConsole(int port) throws IOException {
+        this(port, BufferAllocator.heap());
+    }
+
+    public ServerEchoWithConsole(int port, BufferAllocator allocator) throws IOException {
+        this.allocator = Objects.requireNonNull(allocator);
         serverSocketChannel = ServerSocketChannel.open();
         serverSocketChannel.bind(new InetSocketAddress(port));
         selector = Selector.open();
@@ -145,6 +175,7 @@ public class ServerEchoWithConsole {
                             .filter(k -> !((Context) k.attachment()).closed)
                             .count();
                     logger.info("Clients connected: " + connected);
+                    logger.info(stats.toString());
                 }
                 case "SHUTDOWN" -> {
                     logger.info("Shutting down...");
@@ -156,13 +187,26 @@ public class ServerEchoWithConsole {
                 }
                 case "SHUTDOWNNOW" -> {
                     logger.info("Shutting down now...");
-                    selector.keys().forEach(this::silentlyClose);
+                    for (var key : selector.keys()) {
+                        if (key.attachment() instanceof Context context) {
+                            context.silentlyClose();
+                        } else {
+                            silentlyClose(key);
+                        }
+                    }
                     Thread.currentThread().interrupt();
                 }
             }
         }
     }
 
+    /**
+     * @return a summary of the activity of the selector loop
+     */
+    public String stats() {
+        return stats.toString();
+    }
+
     public void launch() throws IOException {
         serverSocketChannel.configureBlocking(false);
         serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
@@ -170,21 +214,29 @@ public class ServerEchoWithConsole {
         console.setDaemon(true);
         console.start();
         while (!Thread.interrupted() && serverSocketChannel.isOpen()) {
-            Helpers.printKeys(selector); // for debug
-            System.out.println("Starting select");
+            if (Helpers.DEBUG) {
+                Helpers.printKeys(selector);
+                System.out.println("Starting select");
+            }
             try {
-                selector.select(this::treatKey);
+                stats.beforeSelect();
+                stats.afterSelect(selector.select(this::treatKey));
                 processCommands();
             } catch (UncheckedIOException tunneled) {
                 throw tunneled.getCause();
             }
-            System.out.println("Select finished");
+            if (Helpers.DEBUG) {
+                System.out.println("Select finished");
+            }
         }
         console.interrupt();
     }
 
     private void treatKey(SelectionKey key) {
-        Helpers.printSelectedKey(key); // for debug
+        stats.keySelected();
+        if (Helpers.DEBUG) {
+            Helpers.printSelectedKey(key);
+        }
         try {
             if (key.isValid() && key.isAcceptable()) {
                 doAccept(key);
@@ -202,7 +254,7 @@ public class ServerEchoWithConsole {
             }
         } catch (IOException e) {
             logger.log(Level.INFO, "Connection closed with client due to IOException", e);
-            silentlyClose(key);
+            ((Context) key.attachment()).silentlyClose();
         }
     }
 
@@ -215,7 +267,7 @@ public class ServerEchoWithConsole {
         }
         sc.configureBlocking(false);
         var k = sc.register(selector, SelectionKey.OP_READ);
-        k.attach(new Context(k));
+        k.attach(new Context(k, allocator, stats));
     }
 
     private void silentlyClose(SelectionKey key) {
@@ -232,7 +284,7 @@ public class ServerEchoWithConsole {
             usage();
             return;
         }
-        new ServerEchoWithConsole(Integer.parseInt(args[0])).launch();
+        new ServerEchoWithConsole(Integer.parseInt(args[0]), BufferAllocator.fromSystemProperties()).launch();
     }
 
     private static void usage() {
@@ -0,0 +1,266 @@
+package fr.upem.net.tcp.nonblocking;
+
+import fr.upem.net.buffer.BufferAllocator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Nonblocking LongSum server: each request is an int giving the number of operands
+ * followed by the operands as longs, the answer is their sum as a long.
+ * <p>
+ * A client may send several requests without waiting for the answers, they are
+ * answered in order. The operands are summed as they arrive by a {@link LongSumReader},
+ * so a connection only needs its two buffers whatever the size of the requests and a
+ * single thread serves thousands of clients.
+ */
+public class ServerLongSum {
+    static private class Context {
+        private final SelectionKey key;
+        private final SocketChannel sc;
+        private final ByteBuffer bufferIn;
+        private final ByteBuffer bufferOut;
+        private final BufferAllocator allocator;
+        private final LoopStats stats;
+        private final LongSumReader reader = new LongSumReader();
+        private boolean closed = false;
+        private boolean released = false;
+
+        private Context(SelectionKey key, BufferAllocator allocator, LoopStats stats) {
+            this.key = key;
+            this.sc = (SocketChannel) key.channel();
+            this.allocator = allocator;
+            this.stats = stats;
+            this.bufferIn = allocator.allocate(BUFFER_SIZE);
+            this.bufferOut = allocator.allocate(BUFFER_SIZE);
+        }
+
+        /**
+         * Process the content of bufferIn into bufferOut
+         * <p>
+         * The requests are answered in order, as long as bufferOut has room for an
+         * answer. Once it is full, the remaining requests wait in bufferIn, which stops
+         * reading from the client when it is full too.
+         * <p>
+         * The convention is that both buffers are in write-mode before the call to
+         * process and after the call
+         */
+        private void process() {
+            bufferIn.flip();
+            while (bufferOut.remaining() >= Long.BYTES) {
+                var status = reader.processReadMode(bufferIn);
+                if (status == Reader.ProcessStatus.REFILL) {
+                    break;
+                }
+                if (status == Reader.ProcessStatus.ERROR) {
+                    logger.info("Malformed request, closing connection");
+                    silentlyClose();
+                    return;
+                }
+                bufferOut.putLong(reader.get());
+                reader.reset();
+                stats.frameDecoded();
+            }
+            bufferIn.compact();
+        }
+
+        /**
+         * Update the interestOps of the key looking only at values of the boolean
+         * closed and of both ByteBuffers.
+         * <p>
+         * The convention is that both buffers are in write-mode before the call to
+         * updateInterestOps and after the call. Also, it is assumed that process has
+         * been called just before updateInterestOps.
+         */
+        private void updateInterestOps() {
+            if (!sc.isOpen()) {
+                return;
+            }
+            var interestOps = 0;
+            if (!closed && bufferIn.hasRemaining()) {
+                interestOps |= SelectionKey.OP_READ;
+            }
+            if (bufferOut.position() != 0) {
+                interestOps |= SelectionKey.OP_WRITE;
+            }
+            if (interestOps == 0) {
+                silentlyClose();
+                return;
+            }
+            key.interestOps(interestOps);
+        }
+
+        private void silentlyClose() {
+            try {
+                sc.close();
+            } catch (IOException e) {
+                // ignore exception
+            }
+            releaseBuffers();
+        }
+
+        /**
+         * Hand the buffers back to the allocator, they must not be used afterwards
+         */
+        private void releaseBuffers() {
+            if (released) {
+                return;
+            }
+            released = true;
+            allocator.release(bufferIn);
+            allocator.release(bufferOut);
+        }
+
+        /**
+         * Performs the read action on sc
+         * <p>
+         * The convention is that both buffers are in write-mode before the call to
+         * doRead and after the call
+         *
+         * @throws IOException
+         */
+
+        private void doRead() throws IOException {
+            var bytes = sc.read(bufferIn);
+            stats.read(bytes);
+            if (bytes == 0) {
+                logger.severe("Selector lied on read");
+                return;
+            }
+            if (bytes == -1) {
+                logger.info("Connection closed by " + sc.getRemoteAddress());
+                closed = true;
+            }
+            process();
+            updateInterestOps();
+        }
+
+        /**
+         * Performs the write action on sc
+         * <p>
+         * The convention is that both buffers are in write-mode before the call to
+         * doWrite and after the call
+         *
+         * @throws IOException
+         */
+
+        private void doWrite() throws IOException {
+            bufferOut.flip();
+            if (closed && !bufferOut.hasRemaining()) {
+                silentlyClose();
+                return;
+            }
+            var bytes = sc.write(bufferOut);
+            stats.written(bytes);
+            bufferOut.compact();
+            if (bytes == 0) {
+                logger.severe("Selector lied on write");
+            }
+            process();
+            updateInterestOps();
+        }
+
+    }
+
+    private static final int BUFFER_SIZE = 1024;
+    private static final Logger logger = Logger.getLogger(ServerLongSum.class.getName());
+
+    private final ServerSocketChannel serverSocketChannel;
+    private final Selector selector;
+    private final BufferAllocator allocator;
+    private final LoopStats stats = new LoopStats("ServerLongSum");
+
+    public ServerLongSum(int port) throws IOException {
+        this(port, BufferAllocator.heap());
+    }
+
+    public ServerLongSum(int port, BufferAllocator allocator) throws IOException {
+        this.allocator = Objects.requireNonNull(allocator);
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress(port));
+        selector = Selector.open();
+    }
+
+    /**
+     * @return a summary of the activity of the selector loop
+     */
+    public String stats() {
+        return stats.toString();
+    }
+
+    public void launch() throws IOException {
+        serverSocketChannel.configureBlocking(false);
+        serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+        while (!Thread.interrupted()) {
+            if (Helpers.DEBUG) {
+                Helpers.printKeys(selector);
+                System.out.println("Starting select");
+            }
+            try {
+                stats.beforeSelect();
+                stats.afterSelect(selector.select(this::treatKey));
+            } catch (UncheckedIOException tunneled) {
+                throw tunneled.getCause();
+            }
+            if (Helpers.DEBUG) {
+                System.out.println("Select finished");
+            }
+        }
+    }
+
+    private void treatKey(SelectionKey key) {
+        stats.keySelected();
+        if (Helpers.DEBUG) {
+            Helpers.printSelectedKey(key);
+        }
+        try {
+            if (key.isValid() && key.isAcceptable()) {
+                doAccept(key);
+            }
+        } catch (IOException ioe) {
+            // lambda call in select requires to tunnel IOException
+            throw new UncheckedIOException(ioe);
+        }
+        try {
+            if (key.isValid() && key.isWritable()) {
+                ((Context) key.attachment()).doWrite();
+            }
+            if (key.isValid() && key.isReadable()) {
+                ((Context) key.attachment()).doRead();
+            }
+        } catch (IOException e) {
+            logger.log(Level.INFO, "Connection closed with client due to IOException", e);
+            ((Context) key.attachment()).silentlyClose();
+        }
+    }
+
+    private void doAccept(SelectionKey key) throws IOException {
+        var ssc = (ServerSocketChannel) key.channel();
+        var sc = ssc.accept();
+        if (sc == null) {
+            logger.severe("Selector lied");
+            return;
+        }
+        sc.configureBlocking(false);
+        var k = sc.register(selector, SelectionKey.OP_READ);
+        k.attach(new Context(k, allocator, stats));
+    }
+
+    public static void main(String[] args) throws NumberFormatException, IOException {
+        if (args.length != 1) {
+            usage();
+            return;
+        }
+        new ServerLongSum(Integer.parseInt(args[0]), BufferAllocator.fromSystemProperties()).launch();
+    }
+
+    private static void usage() {
+        System.out.println("Usage : ServerLongSum port");
+    }
+}
\ No newline at end of file
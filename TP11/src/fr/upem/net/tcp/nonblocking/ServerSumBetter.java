@@ -1,10 +1,13 @@
 package fr.upem.net.tcp.nonblocking;
 
+import fr.upem.net.buffer.BufferAllocator;
+
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
+import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -12,13 +15,20 @@ public class ServerSumBetter {
     static private class Context {
         private final SelectionKey key;
         private final SocketChannel sc;
-        private final ByteBuffer bufferIn = ByteBuffer.allocate(BUFFER_SIZE);
-        private final ByteBuffer bufferOut = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ByteBuffer bufferIn;
+        private final ByteBuffer bufferOut;
+        private final BufferAllocator allocator;
+        private final LoopStats stats;
         private boolean closed = false;
+        private boolean released = false;
 
-        private Context(SelectionKey key) {
+        private Context(SelectionKey key, BufferAllocator allocator, LoopStats stats) {
             this.key = key;
             this.sc = (SocketChannel) key.channel();
+            this.allocator = allocator;
+            this.stats = stats;
+            this.bufferIn = allocator.allocate(BUFFER_SIZE);
+            this.bufferOut = allocator.allocate(BUFFER_SIZE);
         }
 
         /**
@@ -34,6 +44,7 @@ public class ServerSumBetter {
 				var a = bufferIn.getInt();
 				var b = bufferIn.getInt();
 				bufferOut.putInt(a + b);
+				stats.frameDecoded();
             }
             bufferIn.compact();
         }
@@ -67,6 +78,19 @@ public class ServerSumBetter {
             } catch (IOException e) {
                 // ignore exception
             }
+            releaseBuffers();
+        }
+
+        /**
+         * Hand the buffers back to the allocator, they must not be used afterwards
+         */
+        private void releaseBuffers() {
+            if (released) {
+                return;
+            }
+            released = true;
+            allocator.release(bufferIn);
+            allocator.release(bufferOut);
         }
 
         /**
@@ -80,6 +104,7 @@ public class ServerSumBetter {
 
         private void doRead() throws IOException {
             var bytes = sc.read(bufferIn);
+            stats.read(bytes);
             if (bytes == 0) {
                 logger.severe("Selector lied on read");
             }
@@ -107,6 +132,7 @@ public class ServerSumBetter {
                 return;
             }
             var bytes = sc.write(bufferOut);
+            stats.written(bytes);
             bufferOut.compact();
             if (bytes == 0) {
                 logger.severe("Selector lied on write");
@@ -122,30 +148,52 @@ public class ServerSumBetter {
 
     private final ServerSocketChannel serverSocketChannel;
     private final Selector selector;
+    private final BufferAllocator allocator;
+    private final LoopStats stats = new LoopStats("ServerSumBetter");
 
     public ServerSumBetter(int port) throws IOException {
+        this(port, BufferAllocator.heap());
+    }
+
+    public ServerSumBetter(int port, BufferAllocator allocator) throws IOException {
+        this.allocator = Objects.requireNonNull(allocator);
         serverSocketChannel = ServerSocketChannel.open();
         serverSocketChannel.bind(new InetSocketAddress(port));
         selector = Selector.open();
     }
 
+    /**
+     * @return a summary of the activity of the selector loop
+     */
+    public String stats() {
+        return stats.toString();
+    }
+
     public void launch() throws IOException {
         serverSocketChannel.configureBlocking(false);
         serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
         while (!Thread.interrupted()) {
-            Helpers.printKeys(selector); // for debug
-            System.out.println("Starting select");
+            if (Helpers.DEBUG) {
+                Helpers.printKeys(selector);
+                System.out.println("Starting select");
+            }
             try {
-                selector.select(this::treatKey);
+                stats.beforeSelect();
+                stats.afterSelect(selector.select(this::treatKey));
             } catch (UncheckedIOException tunneled) {
                 throw tunneled.getCause();
             }
-            System.out.println("Select finished");
+            if (Helpers.DEBUG) {
+                System.out.println("Select finished");
+            }
         }
     }
 
     private void treatKey(SelectionKey key) {
-        Helpers.printSelectedKey(key); // for debug
+        stats.keySelected();
+        if (Helpers.DEBUG) {
+            Helpers.printSelectedKey(key);
+        }
         try {
             if (key.isValid() && key.isAcceptable()) {
                 doAccept(key);
@@ -163,7 +211,7 @@ public class ServerSumBetter {
             }
         } catch (IOException e) {
             logger.log(Level.INFO, "Connection closed with client due to IOException", e);
-            silentlyClose(key);
+            ((Context) key.attachment()).silentlyClose();
         }
     }
 
@@ -176,16 +224,7 @@ public class ServerSumBetter {
         }
         sc.configureBlocking(false);
         var k = sc.register(selector, SelectionKey.OP_READ);
-        k.attach(new Context(k));
-    }
-
-    private void silentlyClose(SelectionKey key) {
-        Channel sc = key.channel();
-        try {
-            sc.close();
-        } catch (IOException e) {
-            // ignore exception
-        }
+        k.attach(new Context(k, allocator, stats));
     }
 
     public static void main(String[] args) throws NumberFormatException, IOException {
@@ -193,7 +232,7 @@ public class ServerSumBetter {
             usage();
             return;
         }
-        new ServerSumBetter(Integer.parseInt(args[0])).launch();
+        new ServerSumBetter(Integer.parseInt(args[0]), BufferAllocator.fromSystemProperties()).launch();
     }
 
     private static void usage() {
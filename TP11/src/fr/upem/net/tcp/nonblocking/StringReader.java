@@ -1,72 +1,33 @@
 package fr.upem.net.tcp.nonblocking;
 
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 
 public class StringReader implements Reader<String> {
 
-    private enum State {
-        DONE, WAITING_LENGTH, WAITING_CONTENT, ERROR
-    }
-
-    private State state = State.WAITING_LENGTH;
-    private final IntReader intReader = new IntReader();
-    private final ByteBuffer internalBuffer = ByteBuffer.allocate(1024); // write-mode
-    private int messageLength;
+    private final StringViewReader viewReader = new StringViewReader();
     private String message;
 
-    private ProcessStatus getMessageLength(ByteBuffer buffer) {
-        var state = intReader.process(buffer);
-        if (state != ProcessStatus.DONE) {
-            return state;
-        }
-        messageLength = intReader.get();
-        if (messageLength < 0 || messageLength > 1024) {
-            return ProcessStatus.ERROR;
+    @Override
+    public ProcessStatus process(ByteBuffer buffer) {
+        var status = viewReader.process(buffer);
+        if (status == ProcessStatus.DONE) {
+            message = viewReader.get().toString();
         }
-        return ProcessStatus.DONE;
+        return status;
     }
 
     @Override
-    public ProcessStatus process(ByteBuffer buffer) {
-        if (state == State.DONE || state == State.ERROR) {
-            throw new IllegalStateException();
-        }
-        if (state == State.WAITING_LENGTH) {
-            var lengthState = getMessageLength(buffer);
-            if (lengthState != ProcessStatus.DONE) {
-                return lengthState;
-            }
-            internalBuffer.limit(messageLength);
-            state = State.WAITING_CONTENT;
-        }
-        if (state == State.WAITING_CONTENT) {
-            buffer.flip();
-            try {
-                if (buffer.remaining() <= internalBuffer.remaining()) {
-                    internalBuffer.put(buffer);
-                } else {
-                    var oldLimit = buffer.limit();
-                    buffer.limit(internalBuffer.remaining());
-                    internalBuffer.put(buffer);
-                    buffer.limit(oldLimit);
-                }
-            } finally {
-                buffer.compact();
-            }
-        }
-        if (internalBuffer.hasRemaining()) {
-            return ProcessStatus.REFILL;
+    public ProcessStatus processReadMode(ByteBuffer buffer) {
+        var status = viewReader.processReadMode(buffer);
+        if (status == ProcessStatus.DONE) {
+            message = viewReader.get().toString();
         }
-        state = State.DONE;
-        internalBuffer.flip();
-        message = StandardCharsets.UTF_8.decode(internalBuffer).toString();
-        return ProcessStatus.DONE;
+        return status;
     }
 
     @Override
     public String get() {
-        if (state != State.DONE) {
+        if (message == null) {
             throw new IllegalStateException();
         }
         return message;
@@ -74,8 +35,7 @@ public class StringReader implements Reader<String> {
 
     @Override
     public void reset() {
-        state = State.WAITING_LENGTH;
-        internalBuffer.clear();
-        intReader.reset();
+        viewReader.reset();
+        message = null;
     }
-}
\ No newline at end of file
+}
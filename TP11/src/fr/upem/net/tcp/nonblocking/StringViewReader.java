@@ -0,0 +1,137 @@
+package fr.upem.net.tcp.nonblocking;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Variant of {@link StringReader} which does not allocate anything per string.
+ * <p>
+ * The bytes are decoded in an internal CharBuffer, straight from the source buffer
+ * when it holds the whole string, with a fast path for ASCII content and a reused
+ * CharsetDecoder for the rest. {@link #get()} returns a view on this CharBuffer,
+ * which is only valid until the next call to {@link #reset()}: call toString on it
+ * to keep the value. The view is always the same object, so it must be compared
+ * with {@link CharSequence#compare} or String.contentEquals, not equals.
+ */
+public class StringViewReader implements Reader<CharSequence> {
+
+    private static final int MAX_LENGTH = 1024;
+
+    private enum State {
+        DONE, WAITING_LENGTH, WAITING_CONTENT, ERROR
+    }
+
+    private State state = State.WAITING_LENGTH;
+    private final IntReader intReader = new IntReader();
+    private final ByteBuffer internalBuffer = ByteBuffer.allocate(MAX_LENGTH); // write-mode
+    // each UTF-8 byte decodes to at most one char, even when malformed
+    private final CharBuffer chars = CharBuffer.allocate(MAX_LENGTH);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private ProcessStatus getLength(ByteBuffer buffer) {
+        var status = intReader.processReadMode(buffer);
+        if (status != ProcessStatus.DONE) {
+            return status;
+        }
+        var length = intReader.get();
+        if (length < 0 || length > MAX_LENGTH) {
+            state = State.ERROR;
+            return ProcessStatus.ERROR;
+        }
+        internalBuffer.limit(length);
+        return ProcessStatus.DONE;
+    }
+
+    @Override
+    public ProcessStatus process(ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            return processReadMode(buffer);
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    @Override
+    public ProcessStatus processReadMode(ByteBuffer buffer) {
+        if (state == State.DONE || state == State.ERROR) {
+            throw new IllegalStateException();
+        }
+        if (state == State.WAITING_LENGTH) {
+            var status = getLength(buffer);
+            if (status != ProcessStatus.DONE) {
+                return status;
+            }
+            state = State.WAITING_CONTENT;
+        }
+        if (internalBuffer.position() == 0 && buffer.remaining() >= internalBuffer.limit()) {
+            // the whole content is there, decode it in place
+            state = State.DONE;
+            decode(buffer, internalBuffer.limit());
+            return ProcessStatus.DONE;
+        }
+        if (buffer.remaining() <= internalBuffer.remaining()) {
+            internalBuffer.put(buffer);
+        } else {
+            var oldLimit = buffer.limit();
+            buffer.limit(buffer.position() + internalBuffer.remaining());
+            internalBuffer.put(buffer);
+            buffer.limit(oldLimit);
+        }
+        if (internalBuffer.hasRemaining()) {
+            return ProcessStatus.REFILL;
+        }
+        state = State.DONE;
+        internalBuffer.flip();
+        decode(internalBuffer, internalBuffer.remaining());
+        return ProcessStatus.DONE;
+    }
+
+    /**
+     * Decodes the next length bytes of src (in read-mode) in chars (left in read-mode).
+     * ASCII bytes are copied as is, the decoder only takes over from the first non
+     * ASCII byte.
+     */
+    private void decode(ByteBuffer src, int length) {
+        var start = src.position();
+        var dst = chars.clear().array();
+        var i = 0;
+        byte b;
+        while (i < length && (b = src.get(start + i)) >= 0) {
+            dst[i++] = (char) b;
+        }
+        if (i == length) {
+            chars.limit(length);
+            src.position(start + length);
+            return;
+        }
+        var oldLimit = src.limit();
+        src.limit(start + length).position(start + i);
+        chars.position(i);
+        decoder.reset();
+        decoder.decode(src, chars, true);
+        decoder.flush(chars);
+        chars.flip();
+        src.limit(oldLimit);
+    }
+
+    @Override
+    public CharSequence get() {
+        if (state != State.DONE) {
+            throw new IllegalStateException();
+        }
+        return chars;
+    }
+
+    @Override
+    public void reset() {
+        state = State.WAITING_LENGTH;
+        internalBuffer.clear();
+        intReader.reset();
+    }
+}
@@ -0,0 +1,74 @@
+package fr.upem.net.tcp.nonblocking;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StringViewReaderTest {
+
+    private static ByteBuffer encode(String... strings) {
+        var bb = ByteBuffer.allocate(1024);
+        for (var string : strings) {
+            var bytes = StandardCharsets.UTF_8.encode(string);
+            bb.putInt(bytes.remaining()).put(bytes);
+        }
+        return bb;
+    }
+
+    @Test
+    public void ascii() {
+        var sr = new StringViewReader();
+        assertEquals(Reader.ProcessStatus.DONE, sr.process(encode("hello")));
+        assertEquals("hello", sr.get().toString());
+    }
+
+    @Test
+    public void asciiThenMultiByte() {
+        var string = "abc€d😀";
+        var sr = new StringViewReader();
+        assertEquals(Reader.ProcessStatus.DONE, sr.process(encode(string)));
+        assertEquals(string, sr.get().toString());
+    }
+
+    @Test
+    public void viewIsReused() {
+        var bb = encode("first", "second");
+        var sr = new StringViewReader();
+        assertEquals(Reader.ProcessStatus.DONE, sr.process(bb));
+        var view = sr.get();
+        assertTrue("first".contentEquals(view));
+        sr.reset();
+        assertEquals(Reader.ProcessStatus.DONE, sr.process(bb));
+        assertSame(view, sr.get());
+        assertTrue("second".contentEquals(view));
+    }
+
+    @Test
+    public void malformedIsReplaced() {
+        var bb = ByteBuffer.allocate(16);
+        bb.putInt(3).put((byte) 'a').put((byte) 0xFF).put((byte) 'b');
+        var sr = new StringViewReader();
+        assertEquals(Reader.ProcessStatus.DONE, sr.process(bb));
+        assertEquals("a�b", sr.get().toString());
+    }
+
+    @Test
+    public void messageSplitBetweenFields() {
+        var bb = encode("nick", "content").flip();
+        var small = ByteBuffer.allocate(3);
+        var mr = new MessageViewReader();
+        var status = Reader.ProcessStatus.REFILL;
+        while (bb.hasRemaining()) {
+            while (bb.hasRemaining() && small.hasRemaining()) {
+                small.put(bb.get());
+            }
+            status = mr.process(small);
+        }
+        assertEquals(Reader.ProcessStatus.DONE, status);
+        assertEquals("nick: content", mr.get().toString());
+        assertEquals(new Message("nick", "content"), mr.get().toMessage());
+    }
+}
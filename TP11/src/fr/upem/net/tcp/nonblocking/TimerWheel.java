@@ -0,0 +1,182 @@
+package fr.upem.net.tcp.nonblocking;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timer wheel owned by a selector loop, which is the only thread allowed to use
+ * it: no lock, no extra thread.
+ * <p>
+ * Time is cut in ticks of tickNanos. A timer due at tick t is linked in slot t modulo
+ * the number of slots, so scheduling and cancelling are O(1) and a timer can be
+ * rescheduled, e.g. on each read for an idle timeout, without any allocation. Timers
+ * never fire early, and at most one tick late if the loop calls {@link #expire(long)}
+ * after each select, with the timeout given by {@link #selectTimeout(long)}.
+ */
+final class TimerWheel {
+
+    final class Timer {
+        private final Runnable task;
+        private long deadline; // in ticks
+        private int slot = NOT_SCHEDULED;
+        private boolean expiring; // in the expired queue, run unless cancelled or rescheduled
+        private Timer prev;
+        private Timer next;
+
+        private Timer(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Schedules the task to run in delayNanos, replacing the previous deadline if the
+         * timer was already scheduled
+         */
+        void schedule(long delayNanos) {
+            cancel();
+            var now = clock.getAsLong();
+            // rounded up so that the timer never fires early
+            deadline = Math.max(ticks(now - origin + delayNanos + tickNanos - 1), currentTick + 1);
+            slot = (int) (deadline & mask);
+            next = slots[slot];
+            if (next != null) {
+                next.prev = this;
+            }
+            slots[slot] = this;
+            size++;
+        }
+
+        void cancel() {
+            expiring = false;
+            if (slot == NOT_SCHEDULED) {
+                return;
+            }
+            if (prev != null) {
+                prev.next = next;
+            } else {
+                slots[slot] = next;
+            }
+            if (next != null) {
+                next.prev = prev;
+            }
+            prev = next = null;
+            slot = NOT_SCHEDULED;
+            size--;
+        }
+
+        boolean isScheduled() {
+            return slot != NOT_SCHEDULED;
+        }
+    }
+
+    private static final int NOT_SCHEDULED = -1;
+
+    private final LongSupplier clock; // System.nanoTime except in the tests
+    private final long tickNanos;
+    private final Timer[] slots;
+    private final int mask;
+    private final long origin;
+    private final ArrayDeque<Timer> expired = new ArrayDeque<>();
+    private long currentTick; // every slot up to this tick has been expired
+    private int size;
+
+    /**
+     * @param tickNanos the resolution of the wheel
+     * @param slots     the number of slots, a power of 2, timers further than slots ticks
+     *                  away are looked at on each turn of the wheel
+     */
+    TimerWheel(long tickNanos, int slots) {
+        this(tickNanos, slots, System::nanoTime);
+    }
+
+    TimerWheel(long tickNanos, int slots, LongSupplier clock) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("Tick must be positive");
+        }
+        if (slots <= 0 || Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("Number of slots must be a power of 2");
+        }
+        this.clock = Objects.requireNonNull(clock);
+        this.tickNanos = tickNanos;
+        this.slots = new Timer[slots];
+        this.mask = slots - 1;
+        this.origin = clock.getAsLong();
+    }
+
+    private long ticks(long nanos) {
+        return nanos / tickNanos;
+    }
+
+    /**
+     * @return a timer running task on the loop thread, not yet scheduled
+     */
+    Timer newTimer(Runnable task) {
+        return new Timer(Objects.requireNonNull(task));
+    }
+
+    Timer schedule(long delayNanos, Runnable task) {
+        var timer = newTimer(task);
+        timer.schedule(delayNanos);
+        return timer;
+    }
+
+    /**
+     * @return the number of scheduled timers
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the timeout in milliseconds to give to select so that it returns by the
+     * tick of the next timer, 0 (no timeout) if none is scheduled
+     */
+    long selectTimeout(long now) {
+        if (size == 0) {
+            return 0;
+        }
+        var tick = currentTick + 1;
+        // a slot may only hold timers of the next turns, waking up early is harmless
+        for (var i = 0; i < slots.length && slots[(int) (tick & mask)] == null; i++) {
+            tick++;
+        }
+        var nanos = origin + tick * tickNanos - now;
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(nanos + TimeUnit.MILLISECONDS.toNanos(1) - 1));
+    }
+
+    /**
+     * Runs the tasks of the timers due at now
+     *
+     * @return the number of tasks run
+     */
+    int expire(long now) {
+        var nowTick = ticks(now - origin);
+        // after a whole turn every slot has been looked at
+        var from = Math.max(currentTick + 1, nowTick - mask);
+        for (var tick = from; tick <= nowTick; tick++) {
+            var timer = slots[(int) (tick & mask)];
+            while (timer != null) {
+                var next = timer.next;
+                if (timer.deadline <= nowTick) {
+                    timer.cancel();
+                    timer.expiring = true;
+                    expired.add(timer);
+                }
+                timer = next;
+            }
+        }
+        currentTick = Math.max(currentTick, nowTick);
+        // the tasks run once the wheel is consistent, they may schedule or cancel timers
+        var count = 0;
+        Timer timer;
+        while ((timer = expired.poll()) != null) {
+            if (timer.expiring) {
+                timer.expiring = false;
+                timer.task.run();
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,82 @@
+package fr.upem.net.tcp.nonblocking;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimerWheelTest {
+
+    private long now;
+
+    private TimerWheel wheel(int slots) {
+        return new TimerWheel(10, slots, () -> now);
+    }
+
+    @Test
+    public void neverFiresEarly() {
+        var wheel = wheel(8);
+        var fired = new ArrayList<String>();
+        wheel.schedule(25, () -> fired.add("a"));
+        now = 29;
+        assertEquals(0, wheel.expire(now));
+        now = 30;
+        assertEquals(1, wheel.expire(now));
+        assertEquals(List.of("a"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void farTimersWaitForTheirTurn() {
+        var wheel = wheel(4);
+        var fired = new ArrayList<Long>();
+        wheel.schedule(100, () -> fired.add(now));
+        for (now = 0; now < 200; now += 10) {
+            wheel.expire(now);
+        }
+        assertEquals(List.of(100L), fired);
+    }
+
+    @Test
+    public void rescheduleAndCancel() {
+        var wheel = wheel(8);
+        var fired = new int[1];
+        var timer = wheel.newTimer(() -> fired[0]++);
+        timer.schedule(20);
+        now = 15;
+        timer.schedule(20);
+        now = 20;
+        assertEquals(0, wheel.expire(now));
+        assertTrue(timer.isScheduled());
+        timer.cancel();
+        assertFalse(timer.isScheduled());
+        now = 100;
+        assertEquals(0, wheel.expire(now));
+        assertEquals(0, fired[0]);
+    }
+
+    @Test
+    public void taskMayCancelAnotherExpiredTimer() {
+        var wheel = wheel(8);
+        var fired = new int[1];
+        var second = wheel.newTimer(() -> fired[0]++);
+        var first = wheel.newTimer(second::cancel);
+        second.schedule(10);
+        first.schedule(10);
+        now = 10;
+        wheel.expire(now);
+        assertEquals(0, fired[0]);
+    }
+
+    @Test
+    public void selectTimeout() {
+        var wheel = new TimerWheel(1_000_000, 8, () -> now);
+        assertEquals(0, wheel.selectTimeout(now));
+        wheel.schedule(3_500_000, () -> {});
+        assertEquals(4, wheel.selectTimeout(now));
+        now = 3_900_000;
+        assertEquals(1, wheel.selectTimeout(now));
+    }
+}
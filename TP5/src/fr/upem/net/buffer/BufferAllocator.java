@@ -0,0 +1,87 @@
+package fr.upem.net.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.logging.Logger;
+
+/**
+ * Source of the ByteBuffers used by the servers.
+ * <p>
+ * A buffer obtained by {@link #allocate(int)} is in write-mode, its limit is the
+ * requested size but its capacity may be larger. It must be handed back with
+ * {@link #release(ByteBuffer)} once it is not used anymore, and must not be used
+ * after that.
+ * <p>
+ * Implementations are thread-safe.
+ */
+public interface BufferAllocator {
+
+    /**
+     * System property choosing the allocator of {@link #fromSystemProperties()}:
+     * heap (default), direct, pooled or pooled-heap
+     */
+    String ALLOCATOR_PROPERTY = "fr.upem.net.allocator";
+
+    /**
+     * System property enabling leak tracking in {@link #fromSystemProperties()}
+     */
+    String TRACKING_PROPERTY = "fr.upem.net.allocator.tracking";
+
+    ByteBuffer allocate(int size);
+
+    void release(ByteBuffer buffer);
+
+    /**
+     * @return an allocator returning new heap buffers, release does nothing
+     */
+    static BufferAllocator heap() {
+        return UnpooledBufferAllocator.HEAP;
+    }
+
+    /**
+     * @return an allocator returning new direct buffers, release does nothing
+     */
+    static BufferAllocator direct() {
+        return UnpooledBufferAllocator.DIRECT;
+    }
+
+    /**
+     * @param direct         true to carve the buffers in direct slabs
+     * @param maxPooledBytes maximum number of bytes reserved for the slabs
+     * @return an allocator recycling the released buffers
+     * @see PooledBufferAllocator
+     */
+    static BufferAllocator pooled(boolean direct, long maxPooledBytes) {
+        return new PooledBufferAllocator(direct, PooledBufferAllocator.DEFAULT_SLAB_SIZE, maxPooledBytes);
+    }
+
+    /**
+     * @return an allocator recording where each buffer not yet released was allocated
+     * @see LeakTrackingBufferAllocator
+     */
+    static LeakTrackingBufferAllocator tracking(BufferAllocator delegate) {
+        return new LeakTrackingBufferAllocator(delegate);
+    }
+
+    /**
+     * Creates the allocator chosen at startup with the {@value #ALLOCATOR_PROPERTY}
+     * and {@value #TRACKING_PROPERTY} system properties. With tracking enabled, the
+     * buffers never released are reported when the JVM exits.
+     */
+    static BufferAllocator fromSystemProperties() {
+        var name = System.getProperty(ALLOCATOR_PROPERTY, "heap");
+        var allocator = switch (name) {
+            case "heap" -> heap();
+            case "direct" -> direct();
+            case "pooled" -> pooled(true, PooledBufferAllocator.DEFAULT_MAX_POOLED_BYTES);
+            case "pooled-heap" -> pooled(false, PooledBufferAllocator.DEFAULT_MAX_POOLED_BYTES);
+            default -> throw new IllegalArgumentException("Unknown allocator " + name);
+        };
+        if (!Boolean.getBoolean(TRACKING_PROPERTY)) {
+            return allocator;
+        }
+        var tracking = tracking(allocator);
+        var logger = Logger.getLogger(BufferAllocator.class.getName());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> tracking.reportLeaks(logger)));
+        return tracking;
+    }
+}
@@ -1,5 +1,6 @@
 package fr.upem.net.udp;
 
+import fr.upem.net.buffer.BufferAllocator;
 import java.util.logging.Logger;
 import java.io.IOException;
 import java.net.BindException;
@@ -8,6 +9,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Objects;
 
 public class ServerIdUpperCaseUDP {
 
@@ -16,9 +18,16 @@ public class ServerIdUpperCaseUDP {
     private static final int BUFFER_SIZE = 1024;
 
     private final DatagramChannel dc;
-    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final BufferAllocator allocator;
+    private final ByteBuffer buffer;
 
     public ServerIdUpperCaseUDP(int port) throws IOException {
+        this(port, BufferAllocator.direct());
+    }
+
+    public ServerIdUpperCaseUDP(int port, BufferAllocator allocator) throws IOException {
+        this.allocator = Objects.requireNonNull(allocator);
+        this.buffer = allocator.allocate(BUFFER_SIZE);
         dc = DatagramChannel.open();
         dc.bind(new InetSocketAddress(port));
         logger.info("ServerBetterUpperCaseUDP started on port " + port);
@@ -50,6 +59,7 @@ public class ServerIdUpperCaseUDP {
             }
         } finally {
             dc.close();
+            allocator.release(buffer);
         }
     }
 
@@ -71,7 +81,7 @@ public class ServerIdUpperCaseUDP {
         }
 
         try {
-            new ServerIdUpperCaseUDP(port).serve();
+            new ServerIdUpperCaseUDP(port, BufferAllocator.fromSystemProperties()).serve();
         } catch (BindException e) {
             logger.severe("Server could not bind on " + port + "\nAnother server is probably running on this port.");
             return;
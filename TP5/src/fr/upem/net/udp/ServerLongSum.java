@@ -1,5 +1,6 @@
 package fr.upem.net.udp;
 
+import fr.upem.net.buffer.BufferAllocator;
 import fr.upem.net.udp.packet.Packet;
 import fr.upem.net.udp.packet.PacketACK;
 import fr.upem.net.udp.packet.PacketFactory;
@@ -26,9 +27,16 @@ public class ServerLongSum {
 
     private final DatagramChannel dc;
     private final HashMap<SocketAddress, HashMap<Integer, Session>> clientSessions;
-    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final BufferAllocator allocator;
+    private final ByteBuffer buffer;
 
     public ServerLongSum(int port) throws IOException {
+        this(port, BufferAllocator.direct());
+    }
+
+    public ServerLongSum(int port, BufferAllocator allocator) throws IOException {
+        this.allocator = Objects.requireNonNull(allocator);
+        this.buffer = allocator.allocate(BUFFER_SIZE);
         dc = DatagramChannel.open();
         dc.bind(new InetSocketAddress(port));
         logger.info("ServerLongSum started on port " + port);
@@ -101,6 +109,7 @@ public class ServerLongSum {
             }
         } finally {
             dc.close();
+            allocator.release(buffer);
         }
     }
 
@@ -122,7 +131,7 @@ public class ServerLongSum {
         }
 
         try {
-            new ServerLongSum(port).serve();
+            new ServerLongSum(port, BufferAllocator.fromSystemProperties()).serve();
         } catch (BindException e) {
             logger.severe("Server could not bind on " + port + "\nAnother server is probably running on this port.");
             System.exit(3);
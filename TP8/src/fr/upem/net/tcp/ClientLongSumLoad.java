@@ -0,0 +1,265 @@
+package fr.upem.net.tcp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Load generator for the LongSum servers.
+ * <p>
+ * Opens a number of connections, each one sending requests of a given number of longs
+ * on its own thread and checking the sums, either as fast as possible or so that all
+ * the connections together send a target number of requests per second.
+ * <p>
+ * With a target rate, the latency of a request is measured from the time it should
+ * have been sent, not from the time it was: when the server stalls, the requests the
+ * connection could not send meanwhile are counted with the delay they would have seen
+ * instead of being silently skipped (coordinated omission). As fast as possible, each
+ * connection waits for an answer before the next request, so the latencies are the
+ * response times of the server under that load.
+ * <p>
+ * The results are logged and can be saved as JSON, or appended as a line of CSV to
+ * compare several servers.
+ */
+public class ClientLongSumLoad {
+
+    public static final Logger LOGGER = Logger.getLogger(ClientLongSumLoad.class.getName());
+
+    private record Options(InetSocketAddress server, String label, int connections, double rate, int size,
+                           long durationNanos, long warmupNanos, Path output) {
+    }
+
+    private static final class Connection implements Runnable {
+        private final SocketChannel sc;
+        private final ByteBuffer request;
+        private final ByteBuffer response = ByteBuffer.allocate(Long.BYTES);
+        private final long expected;
+        private final long intervalNanos; // 0 as fast as possible
+        private final long firstNanos;
+        private final long measureNanos;
+        private final long endNanos;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private long requests;
+        private long errors;
+        private boolean failed;
+
+        private Connection(SocketChannel sc, int size, long intervalNanos, long firstNanos, long measureNanos,
+                           long endNanos, Random random) {
+            this.sc = sc;
+            this.intervalNanos = intervalNanos;
+            this.firstNanos = firstNanos;
+            this.measureNanos = measureNanos;
+            this.endNanos = endNanos;
+            request = ByteBuffer.allocate(Integer.BYTES + size * Long.BYTES);
+            request.putInt(size);
+            var sum = 0L;
+            for (var i = 0; i < size; i++) {
+                var value = random.nextLong();
+                request.putLong(value);
+                sum += value;
+            }
+            expected = sum;
+        }
+
+        @Override
+        public void run() {
+            try (sc) {
+                var next = firstNanos;
+                for (;;) {
+                    long intended;
+                    if (intervalNanos > 0) {
+                        intended = next;
+                        next += intervalNanos;
+                        for (var now = System.nanoTime(); now < intended; now = System.nanoTime()) {
+                            LockSupport.parkNanos(intended - now);
+                        }
+                    } else {
+                        intended = System.nanoTime();
+                    }
+                    if (intended >= endNanos) {
+                        return;
+                    }
+                    request.flip();
+                    while (request.hasRemaining()) {
+                        sc.write(request);
+                    }
+                    request.limit(request.capacity());
+                    response.clear();
+                    if (!ClientEOS.readFully(sc, response)) {
+                        LOGGER.warning("Connection closed by the server");
+                        failed = true;
+                        return;
+                    }
+                    var done = System.nanoTime();
+                    if (intended < measureNanos) {
+                        continue;
+                    }
+                    histogram.record(done - intended);
+                    requests++;
+                    if (response.flip().getLong() != expected) {
+                        errors++;
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Connection lost", e);
+                failed = true;
+            }
+        }
+    }
+
+    private static String report(Options options, LatencyHistogram histogram, long requests, long errors,
+                                 int failed) {
+        var seconds = options.durationNanos() / 1e9;
+        return String.format(Locale.ROOT,
+                "%s: %d connections, %d longs per request, %s: %d requests in %.1f s, %.1f requests/s,"
+                        + " %d wrong sums, %d connections lost, latency in us p50=%.1f p99=%.1f p99.9=%.1f max=%.1f",
+                options.label(), options.connections(), options.size(),
+                options.rate() > 0 ? "target " + options.rate() + " requests/s" : "as fast as possible",
+                requests, seconds, requests / seconds, errors, failed, micros(histogram.percentile(50)),
+                micros(histogram.percentile(99)), micros(histogram.percentile(99.9)), micros(histogram.max()));
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1e3;
+    }
+
+    private static void save(Options options, LatencyHistogram histogram, long requests, long errors, int failed)
+            throws IOException {
+        var output = options.output();
+        var seconds = options.durationNanos() / 1e9;
+        var values = new Object[] { options.label(), options.connections(), options.rate(), options.size(), seconds,
+                requests, requests / seconds, errors, failed, micros(histogram.percentile(50)),
+                micros(histogram.percentile(99)), micros(histogram.percentile(99.9)), micros(histogram.max()),
+                histogram.mean() / 1e3 };
+        if (output.toString().endsWith(".csv")) {
+            var line = String.format(Locale.ROOT, "\"%s\",%d,%.1f,%d,%.1f,%d,%.1f,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f%n",
+                    values);
+            if (Files.notExists(output)) {
+                line = "label,connections,targetRate,size,durationSeconds,requests,throughput,wrongSums,"
+                        + "connectionsLost,p50Micros,p99Micros,p999Micros,maxMicros,meanMicros" + System.lineSeparator()
+                        + line;
+            }
+            Files.writeString(output, line, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            return;
+        }
+        Files.writeString(output, String.format(Locale.ROOT, """
+                {
+                  "label": "%s",
+                  "connections": %d,
+                  "targetRate": %.1f,
+                  "size": %d,
+                  "durationSeconds": %.1f,
+                  "requests": %d,
+                  "throughput": %.1f,
+                  "wrongSums": %d,
+                  "connectionsLost": %d,
+                  "latencyMicros": { "p50": %.1f, "p99": %.1f, "p999": %.1f, "max": %.1f, "mean": %.1f }
+                }
+                """, values));
+    }
+
+    private static void run(Options options) throws IOException, InterruptedException {
+        var channels = new ArrayList<SocketChannel>();
+        try {
+            for (var i = 0; i < options.connections(); i++) {
+                channels.add(SocketChannel.open(options.server()));
+            }
+        } catch (IOException e) {
+            for (var sc : channels) {
+                sc.close();
+            }
+            throw e;
+        }
+        LOGGER.info(options.connections() + " connections opened to " + options.server());
+        var intervalNanos = options.rate() > 0 ? (long) (options.connections() * 1e9 / options.rate()) : 0;
+        var start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        var measure = start + options.warmupNanos();
+        var end = measure + options.durationNanos();
+        var random = new Random();
+        var connections = new ArrayList<Connection>();
+        var threads = new ArrayList<Thread>();
+        for (var i = 0; i < options.connections(); i++) {
+            // spread the first requests over an interval so that the connections do not send in bursts
+            var first = start + intervalNanos * i / options.connections();
+            var connection = new Connection(channels.get(i), options.size(), intervalNanos, first, measure, end,
+                    random);
+            connections.add(connection);
+            var thread = new Thread(connection, "load-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+        var histogram = new LatencyHistogram();
+        var requests = 0L;
+        var errors = 0L;
+        var failed = 0;
+        for (var connection : connections) {
+            histogram.add(connection.histogram);
+            requests += connection.requests;
+            errors += connection.errors;
+            failed += connection.failed ? 1 : 0;
+        }
+        LOGGER.info(report(options, histogram, requests, errors, failed));
+        if (options.output() != null) {
+            save(options, histogram, requests, errors, failed);
+            LOGGER.info("Results saved in " + options.output());
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2 || args.length % 2 != 0) {
+            usage();
+            return;
+        }
+        var server = new InetSocketAddress(args[0], Integer.parseInt(args[1]));
+        var label = args[0] + ":" + args[1];
+        var connections = 1;
+        var rate = 0.0;
+        var size = 50;
+        var duration = 10.0;
+        var warmup = 2.0;
+        Path output = null;
+        for (var i = 2; i < args.length; i += 2) {
+            var value = args[i + 1];
+            switch (args[i]) {
+                case "-c" -> connections = Integer.parseInt(value);
+                case "-r" -> rate = Double.parseDouble(value);
+                case "-s" -> size = Integer.parseInt(value);
+                case "-d" -> duration = Double.parseDouble(value);
+                case "-w" -> warmup = Double.parseDouble(value);
+                case "-o" -> output = Path.of(value);
+                case "-l" -> label = value;
+                default -> {
+                    usage();
+                    return;
+                }
+            }
+        }
+        if (connections <= 0 || size < 0 || rate < 0 || duration <= 0 || warmup < 0) {
+            usage();
+            return;
+        }
+        run(new Options(server, label, connections, rate, size, (long) (duration * 1e9), (long) (warmup * 1e9),
+                output));
+    }
+
+    private static void usage() {
+        System.out.println("""
+                Usage : ClientLongSumLoad host port [-c connections] [-r requestsPerSecond] [-s longsPerRequest]
+                                          [-d seconds] [-w warmupSeconds] [-o results.json|results.csv] [-l label]
+                Without -r the connections send their requests as fast as possible""");
+    }
+}
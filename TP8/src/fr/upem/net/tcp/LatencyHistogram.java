@@ -0,0 +1,106 @@
+package fr.upem.net.tcp;
+
+/**
+ * Histogram of latencies in nanoseconds with a bounded relative error.
+ * <p>
+ * Each power of 2 is split into {@value #SUB_BUCKETS} buckets, so a value is counted in
+ * a bucket at most 1/{@value #SUB_BUCKETS} larger than itself and a percentile is never
+ * under-estimated by more than that. Recording is allocation-free and not thread-safe:
+ * each thread records in its own histogram and they are merged with {@link #add}.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    /**
+     * Larger values, a bit more than an hour, are counted as this one
+     */
+    static final long MAX_VALUE = (1L << 42) - 1;
+
+    private final long[] counts = new long[index(MAX_VALUE) + 1];
+    private long total;
+    private long min = Long.MAX_VALUE;
+    private long max;
+    private double sum;
+
+    private static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        var shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * @return the largest value counted in the bucket of the given index
+     */
+    private static long highestValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        var shift = index / SUB_BUCKETS - 1;
+        var mantissa = (long) (index % SUB_BUCKETS + SUB_BUCKETS);
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    void record(long nanos) {
+        var value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+        counts[index(value)]++;
+        total++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        sum += value;
+    }
+
+    /**
+     * Adds all the values recorded by other to this histogram
+     */
+    void add(LatencyHistogram other) {
+        for (var i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+    }
+
+    long count() {
+        return total;
+    }
+
+    long min() {
+        return total == 0 ? 0 : min;
+    }
+
+    long max() {
+        return max;
+    }
+
+    double mean() {
+        return total == 0 ? 0 : sum / total;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return a value larger than or equal to percentile % of the recorded values, 0 if
+     * none was recorded
+     */
+    long percentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        if (total == 0) {
+            return 0;
+        }
+        var rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        var seen = 0L;
+        for (var i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestValue(i), max);
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,176 @@
+package fr.upem.net.tcp.http;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Parses a whole HTTP response, header and body, with {@link HTTPReader} reading from
+ * an in-memory channel which returns at most fragment bytes per read, like a socket
+ * receiving small packets.
+ * <p>
+ * Built by bench/tp9, run with
+ * {@code java -jar bench/tp9/target/benchmarks.jar HTTPReaderBenchmark -prof gc} to get
+ * the number of bytes allocated per response (gc.alloc.rate.norm).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HTTPReaderBenchmark {
+
+    private static final int BUFFER_SIZE = 2048;
+    private static final int LARGE_BODY_SIZE = 1 << 20;
+    private static final int CHUNKS = 1_000;
+    private static final int CHUNK_SIZE = 512;
+
+    public enum Response {
+        /**
+         * A dozen of headers and a small body with a Content-Length
+         */
+        TYPICAL_HEADER,
+        /**
+         * A hundred headers and no body
+         */
+        MANY_HEADERS,
+        /**
+         * A body of 1 MiB with a Content-Length
+         */
+        LARGE_BODY,
+        /**
+         * A chunked body of many small chunks
+         */
+        MANY_CHUNKS
+    }
+
+    /**
+     * Channel returning the bytes of a response, at most fragment bytes per read
+     */
+    private static final class FragmentedChannel implements ReadableByteChannel {
+        private final ByteBuffer content; // read-mode
+        private final int fragment;
+
+        private FragmentedChannel(byte[] content, int fragment) {
+            this.content = ByteBuffer.wrap(content);
+            this.fragment = fragment;
+        }
+
+        private void rewind() {
+            content.rewind();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!content.hasRemaining()) {
+                return -1;
+            }
+            var length = Math.min(Math.min(fragment, dst.remaining()), content.remaining());
+            dst.put(dst.position(), content, content.position(), length);
+            dst.position(dst.position() + length);
+            content.position(content.position() + length);
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+
+    @Param
+    private Response response;
+
+    @Param({"16", "1460", "65536"})
+    private int fragment;
+
+    private FragmentedChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private static String typicalHeader(int contentLength) {
+        return "HTTP/1.1 200 OK\r\n"
+                + "Date: Mon, 27 Jul 2009 12:28:53 GMT\r\n"
+                + "Server: Apache/2.2.14 (Win32)\r\n"
+                + "Last-Modified: Wed, 22 Jul 2009 19:15:56 GMT\r\n"
+                + "ETag: \"34aa387-d-1568eb00\"\r\n"
+                + "Accept-Ranges: bytes\r\n"
+                + "Vary: Accept-Encoding\r\n"
+                + "Cache-Control: max-age=3600, public\r\n"
+                + "Set-Cookie: session=38afes7a8; Path=/; HttpOnly\r\n"
+                + "Set-Cookie: lang=fr; Path=/\r\n"
+                + "Connection: keep-alive\r\n"
+                + "Content-Type: text/html; charset=utf-8\r\n"
+                + "Content-Length: " + contentLength + "\r\n"
+                + "\r\n";
+    }
+
+    private static byte[] withBody(String header, byte body) {
+        var bytes = header.getBytes(US_ASCII);
+        var content = new byte[bytes.length + LARGE_BODY_SIZE];
+        System.arraycopy(bytes, 0, content, 0, bytes.length);
+        Arrays.fill(content, bytes.length, content.length, body);
+        return content;
+    }
+
+    private static byte[] content(Response response) {
+        return switch (response) {
+            case TYPICAL_HEADER -> (typicalHeader(52) + "<html><body><p>A typical small page</p></body></html>")
+                    .getBytes(US_ASCII);
+            case MANY_HEADERS -> {
+                var builder = new StringBuilder("HTTP/1.1 204 No Content\r\n");
+                for (var i = 0; i < 100; i++) {
+                    builder.append("X-Custom-Header-").append(i).append(": some value of header number ").append(i)
+                            .append("\r\n");
+                }
+                yield builder.append("\r\n").toString().getBytes(US_ASCII);
+            }
+            case LARGE_BODY -> withBody(typicalHeader(LARGE_BODY_SIZE), (byte) 'a');
+            case MANY_CHUNKS -> {
+                var chunk = Integer.toHexString(CHUNK_SIZE) + "\r\n" + "a".repeat(CHUNK_SIZE) + "\r\n";
+                var header = typicalHeader(0).replace("Content-Length: 0", "Transfer-Encoding: chunked");
+                yield (header + chunk.repeat(CHUNKS) + "0\r\n\r\n").getBytes(US_ASCII);
+            }
+        };
+    }
+
+    @Setup
+    public void setup() {
+        channel = new FragmentedChannel(content(response), fragment);
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) throws IOException {
+        channel.rewind();
+        var reader = new HTTPReader(channel, buffer.clear());
+        var header = reader.readHeader();
+        blackhole.consume(header);
+        if (header.isChunkedTransfer()) {
+            blackhole.consume(reader.readChunks());
+        } else if (header.getContentLength() > 0) {
+            blackhole.consume(reader.readBytes(header.getContentLength()));
+        }
+    }
+}
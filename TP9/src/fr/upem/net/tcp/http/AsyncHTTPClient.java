@@ -0,0 +1,435 @@
+package fr.upem.net.tcp.http;
+
+import fr.upem.net.tcp.nonblocking.Reader.ProcessStatus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Asynchronous HTTP client running all its exchanges on a single selector thread.
+ * <p>
+ * {@link #get} returns at once a future completed with the whole response, following
+ * the 301 and 302 redirections like {@link HTTPClient#get()}. At most
+ * maxConnectionsPerServer connections are open to a server at once, the other
+ * requests wait for one of them, which is reused if the server keeps it alive.
+ * <p>
+ * An exchange fails with a SocketTimeoutException if the connection is not established
+ * within the connect timeout, or if nothing is received nor sent during the read
+ * timeout. The futures are completed on the selector thread: long computations should
+ * be chained with the async methods of CompletableFuture.
+ */
+public final class AsyncHTTPClient implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(AsyncHTTPClient.class.getName());
+    private static final int BUFFER_SIZE = 4096;
+    static final int MAX_REDIRECTIONS = 5;
+
+    private record Exchange(InetSocketAddress server, String resource, CompletableFuture<HTTPResponse> future,
+                            int redirections) {
+    }
+
+    /**
+     * The connections to a server and the exchanges waiting for one of them
+     */
+    private static final class Server {
+        private final ArrayDeque<Exchange> waiting = new ArrayDeque<>();
+        private int connections;
+    }
+
+    private record Deadline(long nanos, Connection connection) {
+    }
+
+    private final class Connection {
+        private final Server server;
+        private final SocketChannel sc;
+        private final SelectionKey key;
+        private final ByteBuffer bufferIn = ByteBuffer.allocate(BUFFER_SIZE); // write-mode
+        private ByteBuffer bufferOut; // read-mode, the request
+        private final HTTPHeaderReader headerReader = new HTTPHeaderReader();
+        private HTTPBodyReader bodyReader;
+        private HTTPHeader header;
+        private Exchange exchange;
+        private long deadline;
+        private boolean reused; // an exchange has already been completed on it
+        private boolean received; // bytes of the current response have been received
+        private boolean closed;
+
+        private Connection(Server server, Exchange exchange) throws IOException {
+            this.server = server;
+            this.exchange = exchange;
+            sc = SocketChannel.open();
+            try {
+                sc.configureBlocking(false);
+                var connected = sc.connect(exchange.server());
+                key = sc.register(selector, SelectionKey.OP_CONNECT, this);
+                deadline = System.nanoTime() + connectTimeoutNanos;
+                deadlines.add(new Deadline(deadline, this));
+                connections.add(this);
+                if (connected) {
+                    send(exchange);
+                }
+            } catch (IOException e) {
+                sc.close();
+                throw e;
+            }
+        }
+
+        private void send(Exchange exchange) {
+            this.exchange = exchange;
+            bufferOut = US_ASCII.encode("GET " + exchange.resource() + " HTTP/1.1\r\nHost: "
+                    + exchange.server().getHostName() + "\r\n\r\n");
+            headerReader.reset();
+            bodyReader = null;
+            header = null;
+            received = false;
+            deadline = System.nanoTime() + readTimeoutNanos;
+            key.interestOps(SelectionKey.OP_WRITE);
+        }
+
+        private void doConnect() throws IOException {
+            if (!sc.finishConnect()) {
+                return;
+            }
+            send(exchange);
+        }
+
+        private void doWrite() throws IOException {
+            if (sc.write(bufferOut) > 0) {
+                deadline = System.nanoTime() + readTimeoutNanos;
+            }
+            if (!bufferOut.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void doRead() throws IOException {
+            var read = sc.read(bufferIn);
+            if (read == -1) {
+                fail(new HTTPException("Connection closed before the end of the response"));
+                return;
+            }
+            if (read == 0) {
+                return;
+            }
+            received = true;
+            deadline = System.nanoTime() + readTimeoutNanos;
+            bufferIn.flip();
+            process();
+            bufferIn.compact();
+        }
+
+        /**
+         * Processes the content of bufferIn, which is in read-mode before and after the
+         * call
+         */
+        private void process() {
+            if (bodyReader == null) {
+                var status = headerReader.processReadMode(bufferIn);
+                if (status == ProcessStatus.REFILL) {
+                    return;
+                }
+                if (status == ProcessStatus.ERROR) {
+                    fail(new HTTPException("Malformed response header"));
+                    return;
+                }
+                header = headerReader.get();
+                if (!HTTPConnectionPool.hasBody(header)) {
+                    complete(ByteBuffer.allocate(0));
+                    return;
+                }
+                try {
+                    bodyReader = new HTTPBodyReader(header);
+                } catch (HTTPException e) {
+                    fail(e);
+                    return;
+                }
+            }
+            switch (bodyReader.processReadMode(bufferIn)) {
+                case REFILL -> {
+                }
+                case ERROR -> fail(new HTTPException("Malformed response body"));
+                case DONE -> complete(bodyReader.get());
+            }
+        }
+
+        private void complete(ByteBuffer body) {
+            var done = exchange;
+            var response = new HTTPResponse(header, body);
+            boolean reusable;
+            try {
+                // bytes after the response mean the server does not follow the protocol
+                reusable = HTTPConnectionPool.isReusable(header) && !bufferIn.hasRemaining();
+            } catch (HTTPException e) {
+                reusable = false;
+            }
+            exchange = null;
+            reused = true;
+            var next = reusable ? server.waiting.poll() : null;
+            if (next != null) {
+                send(next);
+            } else {
+                close();
+            }
+            finish(done, response);
+        }
+
+        private void fail(IOException cause) {
+            var failed = exchange;
+            exchange = null;
+            close();
+            if (failed == null) {
+                return;
+            }
+            if (reused && !received) {
+                // the server closed the kept alive connection before the request arrived
+                retry(failed);
+                return;
+            }
+            failed.future().completeExceptionally(cause);
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            connections.remove(this);
+            key.cancel();
+            try {
+                sc.close();
+            } catch (IOException e) {
+                // ignore exception
+            }
+            server.connections--;
+            startWaiting(server);
+        }
+    }
+
+    private final Selector selector;
+    private final Thread thread;
+    private final int maxConnectionsPerServer;
+    private final long connectTimeoutNanos;
+    private final long readTimeoutNanos;
+    private final ConcurrentLinkedQueue<Exchange> submissions = new ConcurrentLinkedQueue<>();
+    // only used by the selector thread
+    private final HashMap<InetSocketAddress, Server> servers = new HashMap<>();
+    private final HashSet<Connection> connections = new HashSet<>();
+    private final PriorityQueue<Deadline> deadlines = new PriorityQueue<>(Comparator.comparingLong(Deadline::nanos));
+    private volatile boolean closed;
+
+    public AsyncHTTPClient(int maxConnectionsPerServer, Duration connectTimeout, Duration readTimeout)
+            throws IOException {
+        if (maxConnectionsPerServer <= 0) {
+            throw new IllegalArgumentException("The maximum number of connections must be positive");
+        }
+        this.maxConnectionsPerServer = maxConnectionsPerServer;
+        this.connectTimeoutNanos = connectTimeout.toNanos();
+        this.readTimeoutNanos = readTimeout.toNanos();
+        selector = Selector.open();
+        thread = new Thread(this::run, "async-http-client");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return a future completed with the response to GET resource on server, or
+     * exceptionally with an IOException
+     */
+    public CompletableFuture<HTTPResponse> get(InetSocketAddress server, String resource) {
+        var future = new CompletableFuture<HTTPResponse>();
+        submissions.add(new Exchange(Objects.requireNonNull(server), Objects.requireNonNull(resource), future, 0));
+        if (closed) {
+            // the selector thread may be gone, nobody else would fail it
+            failSubmissions();
+        } else {
+            selector.wakeup();
+        }
+        return future;
+    }
+
+    private void run() {
+        try {
+            while (!closed) {
+                try {
+                    selector.select(this::treatKey, selectTimeout(System.nanoTime()));
+                } catch (UncheckedIOException tunneled) {
+                    throw tunneled.getCause();
+                }
+                processSubmissions();
+                expireDeadlines(System.nanoTime());
+            }
+        } catch (IOException e) {
+            logger.log(Level.SEVERE, "Selector failure", e);
+        } finally {
+            closed = true;
+            for (var connection : new ArrayList<>(connections)) {
+                connection.fail(new IOException("Client closed"));
+            }
+            for (var server : servers.values()) {
+                for (var exchange : server.waiting) {
+                    exchange.future().completeExceptionally(new IOException("Client closed"));
+                }
+                server.waiting.clear();
+            }
+            failSubmissions();
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // ignore exception
+            }
+        }
+    }
+
+    private void treatKey(SelectionKey key) {
+        var connection = (Connection) key.attachment();
+        try {
+            if (key.isValid() && key.isConnectable()) {
+                connection.doConnect();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.doWrite();
+            }
+            if (key.isValid() && key.isReadable()) {
+                connection.doRead();
+            }
+        } catch (IOException e) {
+            connection.fail(e);
+        }
+    }
+
+    private void processSubmissions() {
+        Exchange exchange;
+        while ((exchange = submissions.poll()) != null) {
+            submit(exchange);
+        }
+    }
+
+    private void failSubmissions() {
+        Exchange exchange;
+        while ((exchange = submissions.poll()) != null) {
+            exchange.future().completeExceptionally(new IOException("Client closed"));
+        }
+    }
+
+    private void submit(Exchange exchange) {
+        var server = servers.computeIfAbsent(exchange.server(), k -> new Server());
+        server.waiting.add(exchange);
+        startWaiting(server);
+    }
+
+    private void retry(Exchange exchange) {
+        var server = servers.get(exchange.server());
+        server.waiting.addFirst(exchange);
+        startWaiting(server);
+    }
+
+    /**
+     * Opens connections for the exchanges waiting for server, within the limit
+     */
+    private void startWaiting(Server server) {
+        while (!closed && server.connections < maxConnectionsPerServer && !server.waiting.isEmpty()) {
+            var exchange = server.waiting.poll();
+            server.connections++;
+            try {
+                new Connection(server, exchange);
+            } catch (IOException e) {
+                server.connections--;
+                exchange.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Completes the future of exchange with response, or submits the redirection
+     */
+    private void finish(Exchange exchange, HTTPResponse response) {
+        var code = response.header().getCode();
+        if ((code != 301 && code != 302) || response.header().getField("location").isEmpty()) {
+            exchange.future().complete(response);
+            return;
+        }
+        if (exchange.redirections() == MAX_REDIRECTIONS) {
+            exchange.future().completeExceptionally(new HTTPException("Too many redirections"));
+            return;
+        }
+        try {
+            var target = HTTPClient.redirection(response.header());
+            submit(new Exchange(target.server(), target.resource(), exchange.future(), exchange.redirections() + 1));
+        } catch (IOException | IllegalArgumentException e) {
+            exchange.future().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return the timeout in milliseconds of the next select, 0 (no timeout) if there
+     * is no deadline
+     */
+    private long selectTimeout(long now) {
+        var first = deadlines.peek();
+        if (first == null) {
+            return 0;
+        }
+        return Math.max(1, (first.nanos() - now + 999_999) / 1_000_000);
+    }
+
+    /**
+     * Fails the exchanges whose deadline has passed. The deadline of a connection is
+     * pushed back on each progress without touching the queue, so an entry past its
+     * time is put back with the current deadline of its connection.
+     */
+    private void expireDeadlines(long now) {
+        Deadline first;
+        while ((first = deadlines.peek()) != null && first.nanos() <= now) {
+            deadlines.poll();
+            var connection = first.connection();
+            if (connection.closed) {
+                continue;
+            }
+            if (connection.deadline > now) {
+                deadlines.add(new Deadline(connection.deadline, connection));
+                continue;
+            }
+            var message = connection.sc.isConnected() ? "Read timed out" : "Connect timed out";
+            connection.received = true; // a timed out exchange is not retried
+            connection.fail(new SocketTimeoutException(message));
+        }
+    }
+
+    /**
+     * Stops the selector thread, the exchanges not completed yet fail
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package fr.upem.net.tcp.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests suit for the class AsyncHTTPClient, against a keep-alive server serving each
+ * connection on its own thread
+ */
+public class AsyncHTTPClientTest {
+
+    private ServerSocketChannel ssc;
+    private InetSocketAddress server;
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        ssc = ServerSocketChannel.open();
+        ssc.bind(new InetSocketAddress("localhost", 0), 1024);
+        server = (InetSocketAddress) ssc.getLocalAddress();
+        Thread.ofPlatform().daemon().start(() -> {
+            try {
+                for (;;) {
+                    var sc = ssc.accept();
+                    accepted.incrementAndGet();
+                    Thread.ofPlatform().daemon().start(() -> serve(sc));
+                }
+            } catch (IOException e) {
+                // server closed
+            }
+        });
+    }
+
+    @AfterEach
+    public void stopServer() throws IOException {
+        ssc.close();
+    }
+
+    /**
+     * Answers /pageN with "page N", chunked for odd N, /redirect with a redirection to
+     * /page0 and never answers /silent
+     */
+    private void serve(SocketChannel sc) {
+        try (sc) {
+            var reader = new HTTPReader(sc, ByteBuffer.allocate(1024));
+            for (;;) {
+                var resource = reader.readLineCRLF().split(" ")[1];
+                while (!reader.readLineCRLF().isEmpty()) {
+                    // skip the fields
+                }
+                String response;
+                if (resource.equals("/silent")) {
+                    continue;
+                } else if (resource.equals("/redirect")) {
+                    response = "HTTP/1.1 302 Found\r\nLocation: http://localhost:" + server.getPort()
+                            + "/page0\r\nContent-Length: 0\r\n\r\n";
+                } else {
+                    var n = Integer.parseInt(resource.substring("/page".length()));
+                    var body = "page " + n;
+                    response = n % 2 == 0
+                            ? "HTTP/1.1 200 OK\r\nContent-Length: " + body.length() + "\r\n\r\n" + body
+                            : "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                            + Integer.toHexString(body.length()) + "\r\n" + body + "\r\n0\r\n\r\n";
+                }
+                var buffer = US_ASCII.encode(response);
+                while (buffer.hasRemaining()) {
+                    sc.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            // connection closed by the client
+        }
+    }
+
+    private static String body(HTTPResponse response) {
+        return US_ASCII.decode(response.body().flip()).toString();
+    }
+
+    @Test
+    public void testManyConcurrentFetches() throws Exception {
+        try (var client = new AsyncHTTPClient(20, Duration.ofSeconds(5), Duration.ofSeconds(5))) {
+            var futures = new ArrayList<CompletableFuture<HTTPResponse>>();
+            for (var i = 0; i < 1_000; i++) {
+                futures.add(client.get(server, "/page" + i));
+            }
+            for (var i = 0; i < futures.size(); i++) {
+                assertEquals("page " + i, body(futures.get(i).get(10, TimeUnit.SECONDS)));
+            }
+            assertTrue(accepted.get() <= 20, accepted.get() + " connections opened");
+        }
+    }
+
+    @Test
+    public void testRedirection() throws Exception {
+        try (var client = new AsyncHTTPClient(2, Duration.ofSeconds(5), Duration.ofSeconds(5))) {
+            var response = client.get(server, "/redirect").get(10, TimeUnit.SECONDS);
+            assertEquals(200, response.header().getCode());
+            assertEquals("page 0", body(response));
+        }
+    }
+
+    @Test
+    public void testReadTimeout() throws Exception {
+        try (var client = new AsyncHTTPClient(2, Duration.ofSeconds(5), Duration.ofMillis(200))) {
+            var silent = client.get(server, "/silent");
+            var e = assertThrows(ExecutionException.class, () -> silent.get(10, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof SocketTimeoutException, e.getCause().toString());
+            assertEquals("page 2", body(client.get(server, "/page2").get(10, TimeUnit.SECONDS)));
+        }
+    }
+}
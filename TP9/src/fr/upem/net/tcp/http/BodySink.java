@@ -0,0 +1,65 @@
+package fr.upem.net.tcp.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+
+/**
+ * Destination of the bytes of a body streamed by {@link HTTPReader}, so that it never
+ * has to be held in memory.
+ */
+@FunctionalInterface
+public interface BodySink {
+
+    /**
+     * Consumes all the bytes of data, which is in read-mode. data is only valid during
+     * the call, its content must be copied to be kept.
+     */
+    void write(ByteBuffer data) throws IOException;
+
+    /**
+     * Consumes at most count bytes read directly from source, without going through
+     * the buffer of the HTTPReader
+     *
+     * @return the number of bytes transferred, 0 if source is at the end of the
+     * stream, or -1 if the sink cannot read source itself, which is the default
+     */
+    default long transferFrom(ReadableByteChannel source, long count) throws IOException {
+        return -1;
+    }
+
+    /**
+     * @return a sink writing to channel. If channel is a FileChannel, the bytes are
+     * transferred to it from the socket at its position with
+     * {@link FileChannel#transferFrom(ReadableByteChannel, long, long)}
+     */
+    static BodySink of(WritableByteChannel channel) {
+        Objects.requireNonNull(channel);
+        if (channel instanceof FileChannel fileChannel) {
+            return new BodySink() {
+                @Override
+                public void write(ByteBuffer data) throws IOException {
+                    while (data.hasRemaining()) {
+                        fileChannel.write(data);
+                    }
+                }
+
+                @Override
+                public long transferFrom(ReadableByteChannel source, long count) throws IOException {
+                    var position = fileChannel.position();
+                    var transferred = fileChannel.transferFrom(source, position, count);
+                    fileChannel.position(position + transferred);
+                    return transferred;
+                }
+            };
+        }
+        return data -> {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        };
+    }
+}
@@ -0,0 +1,56 @@
+package fr.upem.net.tcp.http;
+
+/**
+ * Range of bytes of a file asked for by the Range field of a request, from first to
+ * last included as in the field.
+ */
+record ByteRange(long first, long last) {
+
+    private static final String UNIT = "bytes=";
+
+    long length() {
+        return last - first + 1;
+    }
+
+    /**
+     * @param value the value of a Range field: "bytes=first-last", "bytes=first-" or
+     *              "bytes=-suffixLength"
+     * @param size  the size of the file
+     * @return the range of the file asked for by value, the end being cut at the end of
+     * the file, or null if value is malformed or asks for several ranges, in which case
+     * the field is ignored and the whole file is sent
+     * @throws HTTPException if the range is valid but no byte of it is in the file
+     */
+    static ByteRange parse(String value, long size) throws HTTPException {
+        value = value.trim();
+        if (!value.regionMatches(true, 0, UNIT, 0, UNIT.length())) {
+            return null;
+        }
+        var spec = value.substring(UNIT.length());
+        var dash = spec.indexOf('-');
+        if (dash == -1 || spec.indexOf(',') != -1) {
+            return null;
+        }
+        var firstText = spec.substring(0, dash).trim();
+        var lastText = spec.substring(dash + 1).trim();
+        try {
+            if (firstText.isEmpty()) {
+                var suffixLength = Long.parseLong(lastText);
+                if (suffixLength < 0) {
+                    return null;
+                }
+                HTTPException.ensure(suffixLength > 0 && size > 0, "Unsatisfiable range: " + value);
+                return new ByteRange(Math.max(0, size - suffixLength), size - 1);
+            }
+            var first = Long.parseLong(firstText);
+            var last = lastText.isEmpty() ? Long.MAX_VALUE : Long.parseLong(lastText);
+            if (first < 0 || last < first) {
+                return null;
+            }
+            HTTPException.ensure(first < size, "Unsatisfiable range: " + value);
+            return new ByteRange(first, Math.min(last, size - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
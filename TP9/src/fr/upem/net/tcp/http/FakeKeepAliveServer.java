@@ -0,0 +1,115 @@
+package fr.upem.net.tcp.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Keep-alive HTTP/1.1 server for the tests of the clients, serving each connection on
+ * its own thread. It answers /pageN with the text/html body "page N", and ends each
+ * connection after responsesPerConnection responses the way given by its Ending.
+ */
+public class FakeKeepAliveServer implements Closeable {
+
+    public enum Ending {
+        /**
+         * Closes the connection right after the last response, without announcing it
+         */
+        CLOSE_AFTER_RESPONSE,
+        /**
+         * Closes the connection when the next request arrives, without answering it,
+         * as a server dropping an idle connection while the request is sent
+         */
+        CLOSE_ON_NEXT_REQUEST,
+        /**
+         * Sends Connection: close with the last response, then closes the connection
+         */
+        ANNOUNCE_CLOSE,
+        /**
+         * Sends the header of the last response but only the first half of its body,
+         * then closes the connection
+         */
+        CLOSE_IN_BODY
+    }
+
+    private final ServerSocketChannel ssc;
+    private final int responsesPerConnection;
+    private final Ending ending;
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    public FakeKeepAliveServer(int responsesPerConnection, Ending ending) throws IOException {
+        this.responsesPerConnection = responsesPerConnection;
+        this.ending = ending;
+        ssc = ServerSocketChannel.open();
+        ssc.bind(new InetSocketAddress("localhost", 0));
+        Thread.ofPlatform().daemon().start(() -> {
+            try {
+                for (;;) {
+                    var sc = ssc.accept();
+                    accepted.incrementAndGet();
+                    Thread.ofPlatform().daemon().start(() -> serve(sc));
+                }
+            } catch (IOException e) {
+                // server closed
+            }
+        });
+    }
+
+    /**
+     * Keep-alive server never ending the connections
+     */
+    public FakeKeepAliveServer() throws IOException {
+        this(Integer.MAX_VALUE, Ending.CLOSE_AFTER_RESPONSE);
+    }
+
+    private void serve(SocketChannel sc) {
+        try (sc) {
+            var reader = new HTTPReader(sc, ByteBuffer.allocate(1024));
+            for (var responses = 1; ; responses++) {
+                var resource = reader.readLineCRLF().split(" ")[1];
+                while (!reader.readLineCRLF().isEmpty()) {
+                    // skip the fields
+                }
+                if (responses > responsesPerConnection) {
+                    return; // CLOSE_ON_NEXT_REQUEST
+                }
+                var last = responses == responsesPerConnection;
+                var body = "page " + resource.substring("/page".length());
+                var response = "HTTP/1.1 200 OK\r\nContent-Type: text/html\r\nContent-Length: " + body.length()
+                        + "\r\n" + (last && ending == Ending.ANNOUNCE_CLOSE ? "Connection: close\r\n" : "") + "\r\n"
+                        + (last && ending == Ending.CLOSE_IN_BODY ? body.substring(0, body.length() / 2) : body);
+                var buffer = US_ASCII.encode(response);
+                while (buffer.hasRemaining()) {
+                    sc.write(buffer);
+                }
+                if (last && ending != Ending.CLOSE_ON_NEXT_REQUEST) {
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            // connection closed by the client
+        }
+    }
+
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) ssc.getLocalAddress();
+    }
+
+    /**
+     * @return the number of connections accepted
+     */
+    public int accepted() {
+        return accepted.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        ssc.close();
+    }
+}
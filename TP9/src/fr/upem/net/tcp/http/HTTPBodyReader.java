@@ -0,0 +1,205 @@
+package fr.upem.net.tcp.http;
+
+import fr.upem.net.tcp.nonblocking.Reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Nonblocking reader of the body of an HTTP response, delimited by the Content-Length
+ * of its header or sent in chunks. {@link #get()} returns the body in a ByteBuffer in
+ * write-mode, as {@link HTTPReader#readBytes(int)} and {@link HTTPReader#readChunks()}.
+ * <p>
+ * The data is copied in bulk from the buffer to the body, and a chunked body grows by
+ * doubling instead of being reallocated for each chunk.
+ */
+public final class HTTPBodyReader implements Reader<ByteBuffer> {
+
+    private enum State {
+        DONE, WAITING_CONTENT, WAITING_CHUNK_SIZE, WAITING_CHUNK_DATA, WAITING_CHUNK_END, WAITING_TRAILER, ERROR
+    }
+
+    static final int DEFAULT_MAX_LENGTH = 64 * 1024 * 1024;
+    private static final int INITIAL_CHUNKED_CAPACITY = 1024;
+
+    private final boolean chunked;
+    private final int contentLength; // -1 if chunked
+    private final int maxLength;
+    private final LineReader lineReader = new LineReader();
+    private State state;
+    private ByteBuffer body; // write-mode
+    private int remaining; // bytes of the content or of the current chunk not yet read
+
+    /**
+     * @throws HTTPException if the body is delimited by the end of the connection,
+     *                       which is not supported, or longer than
+     *                       {@value #DEFAULT_MAX_LENGTH} bytes
+     */
+    public HTTPBodyReader(HTTPHeader header) throws HTTPException {
+        this(header, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param maxLength maximum length of the body, a longer chunked body is an ERROR
+     * @throws HTTPException if the body is delimited by the end of the connection,
+     *                       which is not supported, or longer than maxLength
+     */
+    public HTTPBodyReader(HTTPHeader header, int maxLength) throws HTTPException {
+        this.maxLength = maxLength;
+        chunked = header.isChunkedTransfer();
+        if (chunked) {
+            contentLength = -1;
+        } else if (hasNoBody(header.getCode())) {
+            contentLength = 0;
+        } else {
+            contentLength = header.getContentLength();
+            HTTPException.ensure(contentLength >= 0, "Body delimited by the end of the connection");
+            HTTPException.ensure(contentLength <= maxLength, "Body too long: " + contentLength + " bytes");
+        }
+        reset();
+    }
+
+    private static boolean hasNoBody(int code) {
+        return code < 200 || code == 204 || code == 304;
+    }
+
+    @Override
+    public ProcessStatus process(ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            return processReadMode(buffer);
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    @Override
+    public ProcessStatus processReadMode(ByteBuffer buffer) {
+        for (;;) {
+            switch (state) {
+                case DONE, ERROR -> throw new IllegalStateException();
+                case WAITING_CONTENT -> {
+                    copy(buffer);
+                    if (remaining > 0) {
+                        return ProcessStatus.REFILL;
+                    }
+                    state = State.DONE;
+                    return ProcessStatus.DONE;
+                }
+                case WAITING_CHUNK_SIZE -> {
+                    var status = readLine(buffer);
+                    if (status != ProcessStatus.DONE) {
+                        return status;
+                    }
+                    var size = chunkSize(lineReader.get());
+                    lineReader.reset();
+                    if (size < 0 || size > maxLength - body.position()) {
+                        return error();
+                    }
+                    if (size == 0) {
+                        state = State.WAITING_TRAILER;
+                        continue;
+                    }
+                    ensureCapacity(size);
+                    remaining = size;
+                    state = State.WAITING_CHUNK_DATA;
+                }
+                case WAITING_CHUNK_DATA -> {
+                    copy(buffer);
+                    if (remaining > 0) {
+                        return ProcessStatus.REFILL;
+                    }
+                    state = State.WAITING_CHUNK_END;
+                }
+                case WAITING_CHUNK_END, WAITING_TRAILER -> {
+                    var status = readLine(buffer);
+                    if (status != ProcessStatus.DONE) {
+                        return status;
+                    }
+                    var line = lineReader.get();
+                    lineReader.reset();
+                    if (state == State.WAITING_CHUNK_END) {
+                        if (!line.isEmpty()) {
+                            return error();
+                        }
+                        state = State.WAITING_CHUNK_SIZE;
+                    } else if (line.isEmpty()) {
+                        // the trailer fields, if any, are ignored
+                        state = State.DONE;
+                        return ProcessStatus.DONE;
+                    }
+                }
+            }
+        }
+    }
+
+    private ProcessStatus readLine(ByteBuffer buffer) {
+        var status = lineReader.processReadMode(buffer);
+        if (status == ProcessStatus.ERROR) {
+            return error();
+        }
+        return status;
+    }
+
+    private ProcessStatus error() {
+        state = State.ERROR;
+        return ProcessStatus.ERROR;
+    }
+
+    /**
+     * @return the size given by a chunk-size line, ignoring the chunk extensions, -1 if
+     * it is malformed
+     */
+    private static int chunkSize(String line) {
+        var semicolon = line.indexOf(';');
+        var size = (semicolon == -1 ? line : line.substring(0, semicolon)).trim();
+        try {
+            return Integer.parseInt(size, 16);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Copies at most remaining bytes of buffer, in read-mode, to the body
+     */
+    private void copy(ByteBuffer buffer) {
+        var count = Math.min(remaining, buffer.remaining());
+        body.put(body.position(), buffer, buffer.position(), count);
+        body.position(body.position() + count);
+        buffer.position(buffer.position() + count);
+        remaining -= count;
+    }
+
+    private void ensureCapacity(int size) {
+        if (body.remaining() >= size) {
+            return;
+        }
+        var capacity = (int) Math.min(maxLength, Math.max(2L * body.capacity(), (long) body.position() + size));
+        body = ByteBuffer.allocate(capacity).put(body.flip());
+    }
+
+    @Override
+    public ByteBuffer get() {
+        if (state != State.DONE) {
+            throw new IllegalStateException();
+        }
+        return body;
+    }
+
+    /**
+     * Prepares the reader for another body delimited the same way
+     */
+    @Override
+    public void reset() {
+        lineReader.reset();
+        if (chunked) {
+            state = State.WAITING_CHUNK_SIZE;
+            body = ByteBuffer.allocate(Math.min(INITIAL_CHUNKED_CAPACITY, maxLength));
+            remaining = 0;
+        } else {
+            state = State.WAITING_CONTENT;
+            body = ByteBuffer.allocate(contentLength);
+            remaining = contentLength;
+        }
+    }
+}
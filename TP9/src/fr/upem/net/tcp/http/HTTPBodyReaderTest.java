@@ -0,0 +1,58 @@
+package fr.upem.net.tcp.http;
+
+import fr.upem.net.tcp.nonblocking.Reader.ProcessStatus;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests suit for the class HTTPBodyReader
+ */
+public class HTTPBodyReaderTest {
+
+    private static ProcessStatus feed(HTTPBodyReader reader, String content, int chunkSize) {
+        var bytes = content.getBytes(US_ASCII);
+        var buffer = ByteBuffer.allocate(16);
+        var status = ProcessStatus.REFILL;
+        for (var i = 0; i < bytes.length && status == ProcessStatus.REFILL; i += chunkSize) {
+            buffer.put(bytes, i, Math.min(chunkSize, bytes.length - i));
+            status = reader.process(buffer);
+        }
+        return status;
+    }
+
+    @Test
+    public void testChunkedBody() throws HTTPException {
+        var header = HTTPHeader.create("HTTP/1.1 200 OK", Map.of("Transfer-Encoding", "chunked"));
+        var chunks = "4\r\nWiki\r\n5;ext=1\r\npedia\r\nE\r\n in\r\n\r\nchunks.\r\n0\r\nTrailer: x\r\n\r\n";
+        for (var chunkSize = 1; chunkSize <= 16; chunkSize++) {
+            var reader = new HTTPBodyReader(header);
+            assertEquals(ProcessStatus.DONE, feed(reader, chunks, chunkSize));
+            assertEquals("Wikipedia in\r\n\r\nchunks.", US_ASCII.decode(reader.get().flip()).toString());
+        }
+    }
+
+    @Test
+    public void testContentLength() throws HTTPException {
+        var header = HTTPHeader.create("HTTP/1.1 200 OK", Map.of("Content-Length", "7"));
+        var reader = new HTTPBodyReader(header);
+        var buffer = ByteBuffer.wrap("1234567HTTP/1.1".getBytes(US_ASCII));
+        assertEquals(ProcessStatus.DONE, reader.processReadMode(buffer));
+        assertEquals("1234567", US_ASCII.decode(reader.get().flip()).toString());
+        assertEquals("HTTP/1.1", US_ASCII.decode(buffer).toString());
+    }
+
+    @Test
+    public void testMalformedChunks() throws HTTPException {
+        var header = HTTPHeader.create("HTTP/1.1 200 OK", Map.of("Transfer-Encoding", "chunked"));
+        assertEquals(ProcessStatus.ERROR, feed(new HTTPBodyReader(header), "zz\r\n", 4));
+        assertEquals(ProcessStatus.ERROR, feed(new HTTPBodyReader(header), "2\r\nabc\r\n", 4));
+        var noLength = HTTPHeader.create("HTTP/1.1 200 OK", Map.of());
+        assertThrows(HTTPException.class, () -> new HTTPBodyReader(noLength));
+    }
+}
@@ -1,15 +1,26 @@
 package fr.upem.net.tcp.http;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
 
 public record HTTPClient(InetSocketAddress server, String resource) {
 
+    static final int PIPELINE_WINDOW = 16;
+
     public String get() throws IOException {
         try (var sc = SocketChannel.open()) {
             sc.connect(server);
@@ -21,9 +32,7 @@ public record HTTPClient(InetSocketAddress server, String resource) {
             var header = reader.readHeader();
 
             if (header.getCode() == 301 || header.getCode() == 302) {
-                var newLocation = new URL(header.getFields().getOrDefault("location", ""));
-                var newServer = new InetSocketAddress(newLocation.getHost(), 80);
-                return new HTTPClient(newServer, newLocation.getPath()).get();
+                return redirection(header).get();
             }
 
             if (header.getCode() != 200) {
@@ -44,7 +53,239 @@ public record HTTPClient(InetSocketAddress server, String resource) {
         }
     }
 
+    /**
+     * Same as {@link #get()} over a persistent connection taken from pool, and handed
+     * back to it for the next requests to the same server, redirections included
+     */
+    public String get(HTTPConnectionPool pool) throws IOException, InterruptedException {
+        var response = fetch(pool);
+        var header = response.header();
+
+        if (header.getCode() == 301 || header.getCode() == 302) {
+            return redirection(header).get(pool);
+        }
+
+        if (header.getCode() != 200) {
+            return "";
+        }
+
+        var contentType = header.getContentType().orElse("");
+        if (!contentType.equalsIgnoreCase("text/html")) {
+            return null;
+        }
+        var charset = header.getCharset().orElse(US_ASCII);
+        return charset.decode(response.body().flip()).toString();
+    }
+
+    /**
+     * Same as {@link #get(HTTPConnectionPool)}, serving the fresh responses of cache
+     * without contacting the server and revalidating the stale ones
+     */
+    public String get(HTTPConnectionPool pool, HTTPResponseCache cache) throws IOException, InterruptedException {
+        var entry = cache.lookup(server, resource);
+        var response = entry == null ? null : cache.hit(entry);
+        if (response == null) {
+            response = fetch(pool, entry == null ? "" : entry.conditionalFields());
+            if (entry != null && response.header().getCode() == 304) {
+                response = cache.revalidated(entry, response.header());
+            } else {
+                cache.miss(server, resource, response);
+            }
+        }
+        var header = response.header();
+
+        if (header.getCode() == 301 || header.getCode() == 302) {
+            return redirection(header).get(pool, cache);
+        }
+
+        if (header.getCode() != 200) {
+            return "";
+        }
+
+        var contentType = header.getContentType().orElse("");
+        if (!contentType.equalsIgnoreCase("text/html")) {
+            return null;
+        }
+        var charset = header.getCharset().orElse(US_ASCII);
+        return charset.decode(response.body().duplicate().flip()).toString();
+    }
+
+    /**
+     * Sends the request on a connection of pool and reads the whole response, so that
+     * the connection can be reused
+     */
+    private HTTPResponse fetch(HTTPConnectionPool pool) throws IOException, InterruptedException {
+        return fetch(pool, "");
+    }
+
+    /**
+     * @param fields additional fields of the request, each one terminated by CRLF
+     */
+    private HTTPResponse fetch(HTTPConnectionPool pool, String fields) throws IOException, InterruptedException {
+        for (;;) {
+            var connection = pool.acquire(server);
+            var reusable = false;
+            try {
+                write(connection, request(server, resource, fields));
+                var reader = connection.reader();
+                var header = reader.readHeader();
+                var body = readBody(reader, header);
+                reusable = HTTPConnectionPool.isReusable(header);
+                return new HTTPResponse(header, body);
+            } catch (IOException e) {
+                if (!connection.isReused()) {
+                    throw e;
+                }
+                // the server closed the idle connection while the request was sent, or
+                // before the end of the response, the pool drops it and the request is
+                // sent again
+            } finally {
+                pool.release(connection, reusable);
+            }
+        }
+    }
+
+    /**
+     * Fetches all the resources of server on a single connection of pool, pipelining
+     * the requests: up to {@value #PIPELINE_WINDOW} requests are sent before the first
+     * response is read, and a new one each time a response is read. The redirections
+     * are not followed.
+     * <p>
+     * If the server closes the connection, or announces it will, before answering all
+     * the requests, the requests not answered yet are sent again on a new connection,
+     * as well as the one whose response was cut short.
+     *
+     * @return the responses in the order of resources
+     */
+    public static List<HTTPResponse> fetchAll(InetSocketAddress server, List<String> resources,
+                                              HTTPConnectionPool pool) throws IOException, InterruptedException {
+        var responses = new ArrayList<HTTPResponse>(resources.size());
+        while (responses.size() < resources.size()) {
+            var connection = pool.acquire(server);
+            var reusable = false;
+            var first = responses.size();
+            try {
+                var sent = Math.min(resources.size(), first + PIPELINE_WINDOW);
+                var requests = new StringBuilder();
+                for (var i = first; i < sent; i++) {
+                    requests.append(request(server, resources.get(i)));
+                }
+                write(connection, requests.toString());
+                var reader = connection.reader();
+                for (;;) {
+                    var header = reader.readHeader();
+                    // a body cut short throws, its request is sent again with the others
+                    responses.add(new HTTPResponse(header, readBody(reader, header)));
+                    reusable = HTTPConnectionPool.isReusable(header);
+                    if (!reusable || responses.size() == resources.size()) {
+                        break;
+                    }
+                    if (sent < resources.size()) {
+                        write(connection, request(server, resources.get(sent++)));
+                    }
+                }
+            } catch (IOException e) {
+                reusable = false;
+                if (responses.size() == first && !connection.isReused()) {
+                    throw e;
+                }
+                // the server closed the connection early, the requests not answered are
+                // sent again on another connection
+            } finally {
+                pool.release(connection, reusable);
+            }
+        }
+        return responses;
+    }
+
+    private static String request(InetSocketAddress server, String resource) {
+        return request(server, resource, "");
+    }
+
+    private static String request(InetSocketAddress server, String resource, String fields) {
+        return "GET " + resource + " HTTP/1.1\r\nHost: " + server.getHostName() + "\r\n" + fields + "\r\n";
+    }
+
+    private static void write(HTTPConnectionPool.Connection connection, String requests) throws IOException {
+        var buffer = US_ASCII.encode(requests);
+        while (buffer.hasRemaining()) {
+            connection.channel().write(buffer);
+        }
+    }
+
+    /**
+     * @return the body of the response in a ByteBuffer in write-mode
+     * @throws IOException HTTPException if the connection is closed before the end of
+     *                     a body delimited by Content-Length or by chunks, the
+     *                     connection must then be discarded
+     */
+    private static ByteBuffer readBody(HTTPReader reader, HTTPHeader header) throws IOException {
+        if (!HTTPConnectionPool.hasBody(header)) {
+            return ByteBuffer.allocate(0);
+        }
+        if (header.isChunkedTransfer()) {
+            return reader.readChunks();
+        }
+        var contentLength = header.getContentLength();
+        if (contentLength >= 0) {
+            return reader.readBytes(contentLength);
+        }
+        var out = new ByteArrayOutputStream();
+        reader.readAll(BodySink.of(Channels.newChannel(out)));
+        return ByteBuffer.wrap(out.toByteArray()).position(out.size());
+    }
+
+    /**
+     * Downloads the resource to file, whatever its type, streaming the body from the
+     * socket to the file so that the memory used does not depend on its size
+     *
+     * @return the number of bytes written to file
+     * @throws IOException HTTPException if the response code is not 200 after the
+     *                     redirections
+     */
+    public long download(Path file) throws IOException {
+        try (var sc = SocketChannel.open()) {
+            sc.connect(server);
+            var request = US_ASCII.encode("GET " + resource + " HTTP/1.1\r\nHost:" + server.getHostName() + "\r\n\r\n");
+            sc.write(request);
+            sc.shutdownOutput();
+
+            var reader = new HTTPReader(sc, ByteBuffer.allocate(8192));
+            var header = reader.readHeader();
+
+            if (header.getCode() == 301 || header.getCode() == 302) {
+                return redirection(header).download(file);
+            }
+            HTTPException.ensure(header.getCode() == 200, "Unexpected response:\n" + header.getResponse());
+
+            try (var fileChannel = FileChannel.open(file, CREATE, WRITE, TRUNCATE_EXISTING)) {
+                var sink = BodySink.of(fileChannel);
+                if (header.isChunkedTransfer()) {
+                    return reader.readChunks(sink);
+                }
+                var contentLength = header.getContentLengthLong();
+                if (contentLength == -1) {
+                    return reader.readAll(sink);
+                }
+                reader.readBytes(contentLength, sink);
+                return contentLength;
+            }
+        }
+    }
+
+    static HTTPClient redirection(HTTPHeader header) throws IOException {
+        var newLocation = new URL(header.getField("location").orElse(""));
+        var port = newLocation.getPort() == -1 ? 80 : newLocation.getPort();
+        var newServer = new InetSocketAddress(newLocation.getHost(), port);
+        return new HTTPClient(newServer, newLocation.getPath());
+    }
+
     public static void main(String[] args) throws IOException {
+        if (args.length == 3) {
+            var client = new HTTPClient(new InetSocketAddress(args[0], 80), args[1]);
+            System.out.println(client.download(Path.of(args[2])) + " bytes written to " + args[2]);
+            return;
+        }
         var google = new InetSocketAddress("google.com", 80);
         var res = new HTTPClient(google, "/").get();
         System.out.println(res);
@@ -0,0 +1,100 @@
+package fr.upem.net.tcp.http;
+
+import fr.upem.net.tcp.http.FakeKeepAliveServer.Ending;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests suit for HTTPClient.fetchAll, against a local keep-alive server
+ */
+public class HTTPClientTest {
+
+    private static final int RESOURCES = 3 * HTTPClient.PIPELINE_WINDOW;
+
+    private static List<String> resources() {
+        return IntStream.range(0, RESOURCES).mapToObj(i -> "/page" + i).toList();
+    }
+
+    /**
+     * Checks that the responses are complete and in the order of the resources
+     */
+    private static void assertResponses(List<HTTPResponse> responses) {
+        assertEquals(RESOURCES, responses.size());
+        for (var i = 0; i < RESOURCES; i++) {
+            assertEquals(200, responses.get(i).header().getCode());
+            assertEquals("page " + i, US_ASCII.decode(responses.get(i).body().flip()).toString());
+        }
+    }
+
+    private static List<HTTPResponse> fetchAll(FakeKeepAliveServer server, HTTPConnectionPool pool)
+            throws IOException, InterruptedException {
+        return HTTPClient.fetchAll(server.getAddress(), resources(), pool);
+    }
+
+    @Test
+    public void testFetchAllOnOneConnection() throws IOException, InterruptedException {
+        try (var server = new FakeKeepAliveServer(); var pool = new HTTPConnectionPool(1, 1)) {
+            assertResponses(fetchAll(server, pool));
+            assertEquals(1, pool.openedConnections());
+        }
+    }
+
+    /**
+     * The server closes the connection after 7 responses while requests are still
+     * pipelined on it: they are sent again on a new connection
+     */
+    @Test
+    public void testFetchAllServerClosesEarly() throws IOException, InterruptedException {
+        try (var server = new FakeKeepAliveServer(7, Ending.CLOSE_AFTER_RESPONSE);
+             var pool = new HTTPConnectionPool(1, 1)) {
+            assertResponses(fetchAll(server, pool));
+            // a response may be lost with the connection, never more than 7 are read on one
+            assertTrue(pool.openedConnections() >= (RESOURCES + 6) / 7);
+        }
+    }
+
+    @Test
+    public void testFetchAllServerClosesOnNextRequest() throws IOException, InterruptedException {
+        try (var server = new FakeKeepAliveServer(5, Ending.CLOSE_ON_NEXT_REQUEST);
+             var pool = new HTTPConnectionPool(1, 1)) {
+            assertResponses(fetchAll(server, pool));
+            assertTrue(pool.openedConnections() >= (RESOURCES + 4) / 5);
+        }
+    }
+
+    /**
+     * The server closes the connection in the middle of a body: that response is lost
+     * like the ones not received, and its request is sent again on a new connection
+     */
+    @Test
+    public void testFetchAllServerClosesInBody() throws IOException, InterruptedException {
+        try (var server = new FakeKeepAliveServer(7, Ending.CLOSE_IN_BODY);
+             var pool = new HTTPConnectionPool(1, 1)) {
+            assertResponses(fetchAll(server, pool));
+            assertTrue(pool.openedConnections() >= (RESOURCES + 5) / 6);
+        }
+    }
+
+    /**
+     * The server announces that it closes the connection, the requests left are sent
+     * on a new one without waiting for the end of the stream
+     * <p>
+     * The server closes with pipelined requests unread, the reset it sends may drop
+     * responses the client has not read yet: these are sent again too.
+     */
+    @Test
+    public void testFetchAllConnectionCloseAnnounced() throws IOException, InterruptedException {
+        try (var server = new FakeKeepAliveServer(7, Ending.ANNOUNCE_CLOSE);
+             var pool = new HTTPConnectionPool(1, 1)) {
+            assertResponses(fetchAll(server, pool));
+            assertTrue(pool.openedConnections() >= (RESOURCES + 6) / 7);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package fr.upem.net.tcp.http;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Pool of persistent HTTP/1.1 connections, kept open between requests to the same
+ * server.
+ * <p>
+ * At most maxTotal connections are open at once, {@link #acquire} waits for one to be
+ * released beyond that, and at most maxIdlePerServer of them are kept idle for each
+ * server. An idle connection is checked before being reused: it is dropped if it has
+ * been idle for too long, or if the server closed it or sent unexpected bytes meanwhile.
+ */
+public final class HTTPConnectionPool implements Closeable {
+
+    /**
+     * Connection to a server with the HTTPReader of its responses, which must be read
+     * entirely, the body included, before the connection is released
+     */
+    public static final class Connection {
+        private final InetSocketAddress server;
+        private final SocketChannel sc;
+        private final HTTPReader reader;
+        private final ByteBuffer probe = ByteBuffer.allocate(1);
+        private long idleSince;
+        private boolean reused;
+
+        private Connection(InetSocketAddress server, SocketChannel sc) {
+            this.server = server;
+            this.sc = sc;
+            this.reader = new HTTPReader(sc, ByteBuffer.allocate(BUFFER_SIZE));
+        }
+
+        public SocketChannel channel() {
+            return sc;
+        }
+
+        public HTTPReader reader() {
+            return reader;
+        }
+
+        /**
+         * @return true if the connection was already used for a previous exchange, so
+         * the server may have closed it just before the request was sent
+         */
+        public boolean isReused() {
+            return reused;
+        }
+
+        /**
+         * @return false if the server closed the connection or sent bytes while it was
+         * idle
+         */
+        private boolean isUsable() {
+            if (!sc.isOpen()) {
+                return false;
+            }
+            try {
+                sc.configureBlocking(false);
+                var read = sc.read(probe.clear());
+                sc.configureBlocking(true);
+                return read == 0;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    private static final Logger logger = Logger.getLogger(HTTPConnectionPool.class.getName());
+    private static final int BUFFER_SIZE = 8192;
+    static final long DEFAULT_MAX_IDLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final Object lock = new Object();
+    private final int maxIdlePerServer;
+    private final int maxTotal;
+    private final long maxIdleNanos;
+    private final HashMap<InetSocketAddress, ArrayDeque<Connection>> idle = new HashMap<>();
+    private int total; // connections open or being opened
+    private long opened;
+    private boolean closed;
+
+    public HTTPConnectionPool(int maxIdlePerServer, int maxTotal) {
+        this(maxIdlePerServer, maxTotal, DEFAULT_MAX_IDLE_NANOS);
+    }
+
+    /**
+     * @param maxIdleNanos how long a connection may stay idle before being dropped,
+     *                     most servers close them after a few seconds
+     */
+    public HTTPConnectionPool(int maxIdlePerServer, int maxTotal, long maxIdleNanos) {
+        if (maxIdlePerServer < 0 || maxTotal <= 0 || maxIdleNanos < 0) {
+            throw new IllegalArgumentException("Invalid pool limits");
+        }
+        this.maxIdlePerServer = maxIdlePerServer;
+        this.maxTotal = maxTotal;
+        this.maxIdleNanos = maxIdleNanos;
+    }
+
+    /**
+     * @return an idle connection to server if a usable one is available, otherwise a
+     * new one, once the number of open connections is below maxTotal
+     */
+    public Connection acquire(InetSocketAddress server) throws IOException, InterruptedException {
+        var stale = new ArrayList<Connection>();
+        try {
+            synchronized (lock) {
+                for (;;) {
+                    if (closed) {
+                        throw new IllegalStateException("Pool closed");
+                    }
+                    var connections = idle.get(server);
+                    Connection connection;
+                    while (connections != null && (connection = connections.pollLast()) != null) {
+                        if (System.nanoTime() - connection.idleSince <= maxIdleNanos && connection.isUsable()) {
+                            connection.reused = true;
+                            return connection;
+                        }
+                        stale.add(connection);
+                        total--;
+                    }
+                    if (total < maxTotal) {
+                        total++;
+                        break;
+                    }
+                    if (evictIdle(stale)) {
+                        continue;
+                    }
+                    lock.wait();
+                }
+            }
+        } finally {
+            for (var connection : stale) {
+                silentlyClose(connection.sc);
+            }
+        }
+        try {
+            var sc = SocketChannel.open(server);
+            synchronized (lock) {
+                opened++;
+            }
+            return new Connection(server, sc);
+        } catch (IOException | RuntimeException e) {
+            synchronized (lock) {
+                total--;
+                lock.notifyAll();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Closes an idle connection to another server to make room for a new one
+     *
+     * @return true if a connection was evicted
+     */
+    private boolean evictIdle(ArrayList<Connection> evicted) {
+        for (var connections : idle.values()) {
+            var connection = connections.pollFirst();
+            if (connection != null) {
+                evicted.add(connection);
+                total--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hands connection back to the pool
+     *
+     * @param reusable true if the response was read entirely and the server did not
+     *                 ask to close the connection, otherwise it is closed
+     */
+    public void release(Connection connection, boolean reusable) {
+        synchronized (lock) {
+            var connections = idle.computeIfAbsent(connection.server, k -> new ArrayDeque<>());
+            if (reusable && !closed && connection.sc.isOpen() && connections.size() < maxIdlePerServer) {
+                connection.idleSince = System.nanoTime();
+                connections.addLast(connection);
+                lock.notifyAll();
+                return;
+            }
+            total--;
+            lock.notifyAll();
+        }
+        silentlyClose(connection.sc);
+    }
+
+    /**
+     * @return true if the connection may be reused after the response of header has
+     * been read: the server keeps it open and the end of the body is known without
+     * waiting for the end of the stream
+     */
+    public static boolean isReusable(HTTPHeader header) throws HTTPException {
+        var connection = header.getField("connection").orElse("").toLowerCase();
+        var keepAlive = header.getVersion().equals("HTTP/1.1") ? !connection.contains("close")
+                : connection.contains("keep-alive");
+        return keepAlive && (header.isChunkedTransfer() || header.getContentLengthLong() >= 0
+                || !hasBody(header));
+    }
+
+    /**
+     * @return false for the responses which never have a body
+     */
+    static boolean hasBody(HTTPHeader header) {
+        var code = header.getCode();
+        return code >= 200 && code != 204 && code != 304;
+    }
+
+    /**
+     * @return the number of connections opened since the creation of the pool
+     */
+    public long openedConnections() {
+        synchronized (lock) {
+            return opened;
+        }
+    }
+
+    /**
+     * @return the number of idle connections
+     */
+    public int idleConnections() {
+        synchronized (lock) {
+            return idle.values().stream().mapToInt(ArrayDeque::size).sum();
+        }
+    }
+
+    /**
+     * Closes the idle connections, the ones in use are closed when released
+     */
+    @Override
+    public void close() {
+        var connections = new ArrayList<Connection>();
+        synchronized (lock) {
+            closed = true;
+            for (var deque : idle.values()) {
+                connections.addAll(deque);
+                total -= deque.size();
+            }
+            idle.clear();
+            lock.notifyAll();
+        }
+        logger.info("Closing " + connections.size() + " idle connections");
+        for (var connection : connections) {
+            silentlyClose(connection.sc);
+        }
+    }
+
+    private static void silentlyClose(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Do nothing
+        }
+    }
+}
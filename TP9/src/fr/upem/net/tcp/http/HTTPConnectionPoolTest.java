@@ -0,0 +1,153 @@
+package fr.upem.net.tcp.http;
+
+import fr.upem.net.tcp.http.FakeKeepAliveServer.Ending;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests suit for the class HTTPConnectionPool, through HTTPClient, against a local
+ * keep-alive server
+ */
+public class HTTPConnectionPoolTest {
+
+    @Test
+    public void testConnectionReused() throws IOException, InterruptedException {
+        try (var server = new FakeKeepAliveServer(); var pool = new HTTPConnectionPool(2, 4)) {
+            for (var i = 0; i < 10; i++) {
+                assertEquals("page " + i, new HTTPClient(server.getAddress(), "/page" + i).get(pool));
+            }
+            assertEquals(1, pool.openedConnections());
+            assertEquals(1, pool.idleConnections());
+            assertEquals(1, server.accepted());
+        }
+    }
+
+    /**
+     * The server closes each connection after its response, the client must never get
+     * an error whether the pool sees the connection closed or the request fails on it
+     */
+    @Test
+    public void testServerClosesAfterEachResponse() throws IOException, InterruptedException {
+        try (var server = new FakeKeepAliveServer(1, Ending.CLOSE_AFTER_RESPONSE);
+             var pool = new HTTPConnectionPool(2, 4)) {
+            for (var i = 0; i < 5; i++) {
+                assertEquals("page " + i, new HTTPClient(server.getAddress(), "/page" + i).get(pool));
+            }
+            assertEquals(5, pool.openedConnections());
+        }
+    }
+
+    /**
+     * The idle connection looks usable but the server closes it when the request
+     * arrives: the request is sent again on a new connection
+     */
+    @Test
+    public void testRetryOnReusedConnection() throws IOException, InterruptedException {
+        try (var server = new FakeKeepAliveServer(1, Ending.CLOSE_ON_NEXT_REQUEST);
+             var pool = new HTTPConnectionPool(2, 4)) {
+            for (var i = 0; i < 3; i++) {
+                assertEquals("page " + i, new HTTPClient(server.getAddress(), "/page" + i).get(pool));
+            }
+            assertEquals(3, pool.openedConnections());
+            assertEquals(3, server.accepted());
+        }
+    }
+
+    @Test
+    public void testConnectionClosedAnnounced() throws IOException, InterruptedException {
+        try (var server = new FakeKeepAliveServer(2, Ending.ANNOUNCE_CLOSE);
+             var pool = new HTTPConnectionPool(2, 4)) {
+            for (var i = 0; i < 4; i++) {
+                assertEquals("page " + i, new HTTPClient(server.getAddress(), "/page" + i).get(pool));
+            }
+            assertEquals(2, pool.openedConnections());
+            assertEquals(0, pool.idleConnections());
+        }
+    }
+
+    /**
+     * The server closes the connection in the middle of the body: the short body is
+     * not returned and the connection is not put back in the pool
+     */
+    @Test
+    public void testServerClosesInBody() throws IOException, InterruptedException {
+        try (var server = new FakeKeepAliveServer(1, Ending.CLOSE_IN_BODY);
+             var pool = new HTTPConnectionPool(2, 4)) {
+            var client = new HTTPClient(server.getAddress(), "/page0");
+            assertThrows(HTTPException.class, () -> client.get(pool));
+            assertEquals(0, pool.idleConnections());
+        }
+    }
+
+    @Test
+    public void testRetryOnReusedConnectionClosedInBody() throws IOException, InterruptedException {
+        try (var server = new FakeKeepAliveServer(2, Ending.CLOSE_IN_BODY);
+             var pool = new HTTPConnectionPool(2, 4)) {
+            assertEquals("page 0", new HTTPClient(server.getAddress(), "/page0").get(pool));
+            assertEquals("page 1", new HTTPClient(server.getAddress(), "/page1").get(pool));
+            assertEquals(2, pool.openedConnections());
+        }
+    }
+
+    @Test
+    public void testIdleTimeout() throws IOException, InterruptedException {
+        try (var server = new FakeKeepAliveServer();
+             var pool = new HTTPConnectionPool(2, 4, TimeUnit.MILLISECONDS.toNanos(50))) {
+            var client = new HTTPClient(server.getAddress(), "/page0");
+            client.get(pool);
+            client.get(pool);
+            assertEquals(1, pool.openedConnections());
+            Thread.sleep(100);
+            assertEquals("page 0", client.get(pool));
+            assertEquals(2, pool.openedConnections());
+        }
+    }
+
+    @Test
+    public void testMaxTotalWaitsForRelease() throws Exception {
+        try (var server = new FakeKeepAliveServer(); var pool = new HTTPConnectionPool(1, 1)) {
+            var connection = pool.acquire(server.getAddress());
+            var second = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pool.acquire(server.getAddress());
+                } catch (IOException | InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            });
+            Thread.sleep(200);
+            assertFalse(second.isDone());
+            pool.release(connection, true);
+            assertSame(connection, second.get(5, TimeUnit.SECONDS));
+            assertEquals(1, pool.openedConnections());
+        }
+    }
+
+    @Test
+    public void testMaxIdlePerServer() throws IOException, InterruptedException {
+        try (var server = new FakeKeepAliveServer(); var pool = new HTTPConnectionPool(1, 4)) {
+            var first = pool.acquire(server.getAddress());
+            var second = pool.acquire(server.getAddress());
+            pool.release(first, true);
+            pool.release(second, true);
+            assertEquals(1, pool.idleConnections());
+            assertTrue(first.channel().isOpen());
+            assertFalse(second.channel().isOpen());
+        }
+    }
+
+    @Test
+    public void testInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new HTTPConnectionPool(-1, 4));
+        assertThrows(IllegalArgumentException.class, () -> new HTTPConnectionPool(1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HTTPConnectionPool(1, 4, -1));
+    }
+}
@@ -0,0 +1,137 @@
+package fr.upem.net.tcp.http;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static fr.upem.net.tcp.http.HTTPException.ensure;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * Fields of a request or a response header, kept as the raw ISO-8859-1 bytes of the
+ * header with the offsets of each name and value. A value is only decoded when it is
+ * asked for and the names are compared to the bytes ignoring the case.
+ */
+final class HTTPFields {
+
+    private final byte[] raw;
+    private final int[] index; // nameStart, nameEnd, valueStart and valueEnd of each field in raw
+    private final int fieldCount;
+
+    private HTTPFields(byte[] raw, int[] index, int fieldCount) {
+        this.raw = raw;
+        this.index = index;
+        this.fieldCount = fieldCount;
+    }
+
+    /**
+     * @param raw    the header, each line terminated by CRLF. The array is kept and must
+     *               not be modified afterwards.
+     * @param start  the index of the first field, after the first line
+     * @param length the number of bytes of raw to parse, the fields stop at the empty
+     *               line if there is one
+     */
+    static HTTPFields parse(byte[] raw, int start, int length) throws HTTPException {
+        var index = new int[4 * 16];
+        var fieldCount = 0;
+        while (start < length) {
+            var end = lineEnd(raw, start, length);
+            if (end == start) {
+                break;
+            }
+            var colon = start;
+            while (colon < end && raw[colon] != ':') {
+                colon++;
+            }
+            ensure(colon > start && colon < end, "Badly formed field:\n" + new String(raw, start, end - start,
+                    ISO_8859_1));
+            var valueStart = colon + 1;
+            var valueEnd = end;
+            while (valueStart < valueEnd && isSpace(raw[valueStart])) {
+                valueStart++;
+            }
+            while (valueEnd > valueStart && isSpace(raw[valueEnd - 1])) {
+                valueEnd--;
+            }
+            if (4 * fieldCount == index.length) {
+                index = Arrays.copyOf(index, 2 * index.length);
+            }
+            index[4 * fieldCount] = start;
+            index[4 * fieldCount + 1] = colon;
+            index[4 * fieldCount + 2] = valueStart;
+            index[4 * fieldCount + 3] = valueEnd;
+            fieldCount++;
+            start = end + 2;
+        }
+        return new HTTPFields(raw, index, fieldCount);
+    }
+
+    /**
+     * @return the index of the CRLF ending the line starting at start, or length if
+     * there is none
+     */
+    static int lineEnd(byte[] raw, int start, int length) {
+        for (var i = start; i < length - 1; i++) {
+            if (raw[i] == '\r' && raw[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * @return true if the name of the field number field is name, ignoring the case
+     */
+    private boolean matches(int field, String name) {
+        var start = index[4 * field];
+        var end = index[4 * field + 1];
+        if (end - start != name.length()) {
+            return false;
+        }
+        for (var i = 0; i < name.length(); i++) {
+            var c = raw[start + i];
+            var expected = name.charAt(i);
+            if (c != expected && Character.toLowerCase((char) (c & 0xFF)) != Character.toLowerCase(expected)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String value(int field) {
+        var start = index[4 * field + 2];
+        return new String(raw, start, index[4 * field + 3] - start, ISO_8859_1);
+    }
+
+    /**
+     * @return the value of the field name, whatever its case, the values of the same
+     * field being separated by ';', or null if there is no such field
+     */
+    String value(String name) {
+        String value = null;
+        for (var field = 0; field < fieldCount; field++) {
+            if (matches(field, name)) {
+                value = value == null ? value(field) : value + ";" + value(field);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return the fields with their names in lower case
+     */
+    Map<String, String> toMap() {
+        var map = new HashMap<String, String>();
+        for (var field = 0; field < fieldCount; field++) {
+            var start = index[4 * field];
+            var name = new String(raw, start, index[4 * field + 1] - start, ISO_8859_1).toLowerCase();
+            map.merge(name, value(field), (v1, v2) -> v1 + ";" + v2);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+}
@@ -0,0 +1,530 @@
+package fr.upem.net.tcp.http;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Nonblocking HTTP/1.1 server of the files of a directory, answering GET and HEAD
+ * requests.
+ * <p>
+ * The requests are parsed as their bytes arrive, so a single thread serves all the
+ * connections. A connection is kept open for the next request unless the client asks
+ * otherwise, and pipelined requests are answered in order. The body of a file is sent
+ * with {@link FileChannel#transferTo}, the kernel copies it to the socket without going
+ * through a buffer of the JVM. The small files requested again are sent from their
+ * mapping in a {@link MappedFileCache}, with the header in the same write.
+ * <p>
+ * A request with a Range field gets only the bytes of that range, in a 206 Partial
+ * Content response, so that a download can be resumed or split between connections.
+ * Several ranges in one field are not supported, the whole file is sent instead.
+ * <p>
+ * A directory without index.html is answered with the list of its files, built as it
+ * is sent. Its length is not known in advance: it is sent chunked to HTTP/1.1 clients,
+ * and HTTP/1.0 clients read it up to the end of the connection.
+ */
+public class HTTPFileServer {
+    static private class Context {
+        private final SelectionKey key;
+        private final SocketChannel sc;
+        private final Path root;
+        private final MappedFileCache cache;
+        private final ByteBuffer bufferIn = ByteBuffer.allocate(BUFFER_SIZE);
+        private final ByteBuffer bufferOut = ByteBuffer.allocate(BUFFER_SIZE);
+        private final HTTPHeaderBuffer headerBuffer = new HTTPHeaderBuffer();
+        // body of a file being sent from its mapping
+        private ByteBuffer mappedBody;
+        // body of a file being sent from the file, from filePosition to fileEnd
+        private FileChannel file;
+        private long filePosition;
+        private long fileEnd;
+        // body of a listing being sent
+        private DirectoryStream<Path> listing;
+        private Iterator<Path> entries;
+        private String listingPrefix;
+        private boolean chunked;
+        private boolean closed = false;
+        private boolean lastResponse = false;
+
+        private Context(SelectionKey key, Path root, MappedFileCache cache) {
+            this.key = key;
+            this.sc = (SocketChannel) key.channel();
+            this.root = root;
+            this.cache = cache;
+        }
+
+        /**
+         * Process the content of bufferIn into bufferOut
+         * <p>
+         * The requests are answered in order, each one once the body of the previous
+         * one is sent. The remaining requests wait in bufferIn, which stops reading from
+         * the client when it is full.
+         * <p>
+         * The convention is that both buffers are in write-mode before the call to
+         * process and after the call
+         */
+        private void process() {
+            while (!lastResponse && mappedBody == null && file == null && listing == null
+                    && bufferOut.remaining() >= MAX_RESPONSE_HEADER) {
+                bufferIn.flip();
+                try {
+                    if (!headerBuffer.fill(bufferIn)) {
+                        break;
+                    }
+                    respond(headerBuffer.request());
+                } catch (HTTPException e) {
+                    logger.info("Malformed request: " + e.getMessage());
+                    lastResponse = true;
+                    putText("HTTP/1.1", false, "400 Bad Request", "");
+                } finally {
+                    bufferIn.compact();
+                }
+            }
+            if (listing != null) {
+                fillListing();
+            }
+        }
+
+        private void respond(HTTPRequest request) {
+            lastResponse = !request.isKeepAlive();
+            var head = request.method().equals("HEAD");
+            if (!head && !request.method().equals("GET")) {
+                putText(request.version(), false, "405 Method Not Allowed", "Allow: GET, HEAD\r\n");
+                return;
+            }
+            String uriPath;
+            try {
+                uriPath = new URI(request.target()).getPath();
+            } catch (URISyntaxException e) {
+                uriPath = null;
+            }
+            if (uriPath == null || !uriPath.startsWith("/")) {
+                putText(request.version(), head, "400 Bad Request", "");
+                return;
+            }
+            var path = resolve(uriPath);
+            if (path != null && Files.isDirectory(path)) {
+                var index = path.resolve("index.html");
+                if (!Files.isRegularFile(index)) {
+                    sendListing(request, head, path, uriPath);
+                    return;
+                }
+                path = index;
+            }
+            if (path == null || !Files.isRegularFile(path)) {
+                putText(request.version(), head, "404 Not Found", "");
+                return;
+            }
+            sendFile(request, head, path);
+        }
+
+        /**
+         * @return the file of root at uriPath, or null if it is outside of root
+         */
+        private Path resolve(String uriPath) {
+            try {
+                var path = root.resolve(uriPath.substring(1)).normalize();
+                return path.startsWith(root) ? path : null;
+            } catch (InvalidPathException e) {
+                return null;
+            }
+        }
+
+        private void sendFile(HTTPRequest request, boolean head, Path path) {
+            ByteBuffer mapped;
+            FileChannel channel = null;
+            long size;
+            try {
+                mapped = cache.get(path);
+                if (mapped != null) {
+                    size = mapped.remaining();
+                } else {
+                    channel = FileChannel.open(path, READ);
+                    size = channel.size();
+                }
+            } catch (IOException e) {
+                logger.log(Level.INFO, "Cannot read " + path, e);
+                putText(request.version(), head, "404 Not Found", "");
+                return;
+            }
+            var range = new ByteRange(0, size - 1);
+            var status = "200 OK";
+            var fields = "Accept-Ranges: bytes\r\n";
+            var rangeField = request.getField("range");
+            if (rangeField.isPresent()) {
+                try {
+                    var asked = ByteRange.parse(rangeField.get(), size);
+                    if (asked != null) {
+                        range = asked;
+                        status = "206 Partial Content";
+                        fields += "Content-Range: bytes " + range.first() + "-" + range.last() + "/" + size + "\r\n";
+                    }
+                } catch (HTTPException e) {
+                    silentlyClose(channel);
+                    putText(request.version(), head, "416 Range Not Satisfiable", "Content-Range: bytes */" + size
+                            + "\r\n");
+                    return;
+                }
+            }
+            putHeader(request.version(), status, "Content-Type: " + contentType(path) + "\r\nContent-Length: "
+                    + range.length() + "\r\n" + fields);
+            if (head || range.length() == 0) {
+                silentlyClose(channel);
+                return;
+            }
+            if (mapped != null) {
+                mappedBody = mapped.limit((int) range.last() + 1).position((int) range.first());
+                return;
+            }
+            file = channel;
+            filePosition = range.first();
+            fileEnd = range.last() + 1;
+        }
+
+        private static String contentType(Path path) {
+            try {
+                var type = Files.probeContentType(path);
+                if (type != null) {
+                    return type;
+                }
+            } catch (IOException e) {
+                // unknown type
+            }
+            return "application/octet-stream";
+        }
+
+        private void sendListing(HTTPRequest request, boolean head, Path directory, String uriPath) {
+            DirectoryStream<Path> stream;
+            try {
+                stream = Files.newDirectoryStream(directory);
+            } catch (IOException e) {
+                logger.log(Level.INFO, "Cannot list " + directory, e);
+                putText(request.version(), head, "404 Not Found", "");
+                return;
+            }
+            chunked = request.version().equals("HTTP/1.1");
+            if (!chunked) {
+                lastResponse = true; // the end of the body is the end of the connection
+            }
+            putHeader(request.version(), "200 OK", "Content-Type: text/html; charset=utf-8\r\n"
+                    + (chunked ? "Transfer-Encoding: chunked\r\n" : ""));
+            if (head) {
+                silentlyClose(stream);
+                return;
+            }
+            listing = stream;
+            entries = stream.iterator();
+            // the links are relative to the directory, which is the last segment of
+            // uriPath if it does not end with '/'
+            listingPrefix = uriPath.endsWith("/") ? "" : directory.getFileName() + "/";
+            putChunk("<!DOCTYPE html>\n<html><body><ul>\n");
+        }
+
+        /**
+         * Adds the next entries of the listing to bufferOut as long as it has room
+         * for a chunk, and the end of the body once all the entries are added
+         */
+        private void fillListing() {
+            try {
+                while (bufferOut.remaining() >= LISTING_SPACE) {
+                    if (!entries.hasNext()) {
+                        putChunk("</ul></body></html>\n");
+                        if (chunked) {
+                            bufferOut.put(US_ASCII.encode("0\r\n\r\n"));
+                        }
+                        silentlyClose(listing);
+                        listing = null;
+                        entries = null;
+                        return;
+                    }
+                    var chunk = new StringBuilder();
+                    while (chunk.length() < LISTING_CHUNK && entries.hasNext()) {
+                        var entry = entries.next();
+                        var name = entry.getFileName() + (Files.isDirectory(entry) ? "/" : "");
+                        var href = new URI(null, null, listingPrefix + name, null).toASCIIString();
+                        chunk.append("<li><a href=\"").append(escape(href)).append("\">").append(escape(name))
+                                .append("</a></li>\n");
+                    }
+                    putChunk(chunk.toString());
+                }
+            } catch (DirectoryIteratorException | URISyntaxException e) {
+                // the response has started, the client only sees that it is cut
+                logger.log(Level.INFO, "Cannot list directory", e);
+                silentlyClose();
+            }
+        }
+
+        private static String escape(String text) {
+            return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+        }
+
+        private void putChunk(String text) {
+            var bytes = UTF_8.encode(text);
+            if (chunked) {
+                bufferOut.put(US_ASCII.encode(Integer.toHexString(bytes.remaining()) + "\r\n"));
+            }
+            bufferOut.put(bytes);
+            if (chunked) {
+                bufferOut.put(US_ASCII.encode("\r\n"));
+            }
+        }
+
+        /**
+         * Adds to bufferOut a response whose body is the status line, for the errors
+         */
+        private void putText(String version, boolean head, String status, String fields) {
+            var body = status + "\n";
+            putHeader(version, status, fields + "Content-Type: text/plain\r\nContent-Length: " + body.length()
+                    + "\r\n");
+            if (!head) {
+                bufferOut.put(US_ASCII.encode(body));
+            }
+        }
+
+        /**
+         * @param fields the fields of the response, each one terminated by CRLF
+         */
+        private void putHeader(String version, String status, String fields) {
+            var connection = "";
+            if (lastResponse) {
+                connection = "Connection: close\r\n";
+            } else if (version.equals("HTTP/1.0")) {
+                connection = "Connection: keep-alive\r\n";
+            }
+            bufferOut.put(US_ASCII.encode(version + " " + status + "\r\n" + fields + connection + "\r\n"));
+        }
+
+        /**
+         * Update the interestOps of the key looking only at values of the boolean
+         * closed, of both ByteBuffers and of the body being sent.
+         * <p>
+         * The convention is that both buffers are in write-mode before the call to
+         * updateInterestOps and after the call. Also, it is assumed that process has
+         * been called just before updateInterestOps.
+         */
+        private void updateInterestOps() {
+            if (!sc.isOpen()) {
+                return;
+            }
+            var interestOps = 0;
+            if (!closed && !lastResponse && bufferIn.hasRemaining()) {
+                interestOps |= SelectionKey.OP_READ;
+            }
+            if (bufferOut.position() != 0 || mappedBody != null || file != null || listing != null) {
+                interestOps |= SelectionKey.OP_WRITE;
+            }
+            if (interestOps == 0) {
+                silentlyClose();
+                return;
+            }
+            key.interestOps(interestOps);
+        }
+
+        private void silentlyClose() {
+            silentlyClose(sc);
+            silentlyClose(file);
+            silentlyClose(listing);
+            mappedBody = null;
+            file = null;
+            listing = null;
+        }
+
+        private static void silentlyClose(AutoCloseable closeable) {
+            if (closeable == null) {
+                return;
+            }
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                // ignore exception
+            }
+        }
+
+        /**
+         * Performs the read action on sc
+         * <p>
+         * The convention is that both buffers are in write-mode before the call to
+         * doRead and after the call
+         *
+         * @throws IOException
+         */
+        private void doRead() throws IOException {
+            var bytes = sc.read(bufferIn);
+            if (bytes == 0) {
+                logger.severe("Selector lied on read");
+            }
+            if (bytes == -1) {
+                closed = true;
+            }
+            process();
+            updateInterestOps();
+        }
+
+        /**
+         * Performs the write action on sc. A mapped body is written with bufferOut in a
+         * single gathering write, the body of a file is sent once bufferOut is empty
+         * <p>
+         * The convention is that both buffers are in write-mode before the call to
+         * doWrite and after the call
+         *
+         * @throws IOException
+         */
+        private void doWrite() throws IOException {
+            bufferOut.flip();
+            long bytes;
+            if (mappedBody != null) {
+                bytes = sc.write(new ByteBuffer[]{bufferOut, mappedBody});
+                if (!mappedBody.hasRemaining()) {
+                    mappedBody = null;
+                }
+            } else {
+                bytes = sc.write(bufferOut);
+            }
+            bufferOut.compact();
+            if (bufferOut.position() == 0 && file != null) {
+                var sent = file.transferTo(filePosition, fileEnd - filePosition, sc);
+                if (sent == 0 && filePosition >= file.size()) {
+                    logger.info("File truncated while it was sent, closing connection");
+                    silentlyClose();
+                    return;
+                }
+                filePosition += sent;
+                bytes += sent;
+                if (filePosition == fileEnd) {
+                    silentlyClose(file);
+                    file = null;
+                }
+            }
+            if (bytes == 0) {
+                logger.severe("Selector lied on write");
+            }
+            process();
+            updateInterestOps();
+        }
+    }
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+    // room needed in bufferOut to answer a request or to add a chunk of a listing
+    private static final int MAX_RESPONSE_HEADER = 1024;
+    private static final int LISTING_CHUNK = 2048; // in chars, one more entry may be added
+    private static final int LISTING_SPACE = 16 * 1024;
+    private static final long CACHE_SIZE = 64 * 1024 * 1024;
+    private static final long MAX_CACHED_FILE_SIZE = 1024 * 1024;
+    private static final Logger logger = Logger.getLogger(HTTPFileServer.class.getName());
+
+    private final ServerSocketChannel serverSocketChannel;
+    private final Selector selector;
+    private final Path root;
+    private final MappedFileCache cache;
+
+    public HTTPFileServer(int port, Path root) throws IOException {
+        this(port, root, new MappedFileCache(CACHE_SIZE, MAX_CACHED_FILE_SIZE));
+    }
+
+    public HTTPFileServer(int port, Path root, MappedFileCache cache) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.cache = Objects.requireNonNull(cache);
+        if (!Files.isDirectory(this.root)) {
+            throw new IllegalArgumentException(root + " is not a directory");
+        }
+        serverSocketChannel = ServerSocketChannel.open();
+        serverSocketChannel.bind(new InetSocketAddress(port));
+        selector = Selector.open();
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverSocketChannel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Serves the clients until the thread is interrupted
+     */
+    public void launch() throws IOException {
+        serverSocketChannel.configureBlocking(false);
+        serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+        try {
+            while (!Thread.interrupted()) {
+                try {
+                    selector.select(this::treatKey);
+                } catch (UncheckedIOException tunneled) {
+                    throw tunneled.getCause();
+                }
+            }
+        } finally {
+            for (var key : selector.keys()) {
+                if (key.attachment() instanceof Context context) {
+                    context.silentlyClose();
+                }
+            }
+            selector.close();
+            serverSocketChannel.close();
+        }
+    }
+
+    private void treatKey(SelectionKey key) {
+        try {
+            if (key.isValid() && key.isAcceptable()) {
+                doAccept(key);
+            }
+        } catch (IOException ioe) {
+            // lambda call in select requires to tunnel IOException
+            throw new UncheckedIOException(ioe);
+        }
+        try {
+            if (key.isValid() && key.isWritable()) {
+                ((Context) key.attachment()).doWrite();
+            }
+            if (key.isValid() && key.isReadable()) {
+                ((Context) key.attachment()).doRead();
+            }
+        } catch (IOException e) {
+            logger.log(Level.INFO, "Connection closed with client due to IOException", e);
+            ((Context) key.attachment()).silentlyClose();
+        }
+    }
+
+    private void doAccept(SelectionKey key) throws IOException {
+        var ssc = (ServerSocketChannel) key.channel();
+        var sc = ssc.accept();
+        if (sc == null) {
+            logger.severe("Selector lied");
+            return;
+        }
+        sc.configureBlocking(false);
+        var k = sc.register(selector, SelectionKey.OP_READ);
+        k.attach(new Context(k, root, cache));
+    }
+
+    public static void main(String[] args) throws NumberFormatException, IOException {
+        if (args.length != 2) {
+            usage();
+            return;
+        }
+        new HTTPFileServer(Integer.parseInt(args[0]), Path.of(args[1])).launch();
+    }
+
+    private static void usage() {
+        System.out.println("Usage : HTTPFileServer port root");
+    }
+}
@@ -0,0 +1,198 @@
+package fr.upem.net.tcp.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests suit for the class HTTPFileServer, with HTTPClient as a client
+ */
+public class HTTPFileServerTest {
+
+    private static final String PAGE = "<html><body>hello</body></html>";
+
+    private Path root;
+    private Thread thread;
+    private InetSocketAddress server;
+
+    @BeforeEach
+    public void startServer() throws IOException {
+        root = Files.createTempDirectory("HTTPFileServerTest");
+        Files.writeString(root.resolve("index.html"), PAGE);
+        Files.createDirectory(root.resolve("files"));
+        Files.writeString(root.resolve("files").resolve("a.txt"), "a");
+        Files.writeString(root.resolve("files").resolve("b c.txt"), "b c");
+        var fileServer = new HTTPFileServer(0, root);
+        server = new InetSocketAddress("localhost", fileServer.getPort());
+        thread = Thread.ofPlatform().daemon().start(() -> {
+            try {
+                fileServer.launch();
+            } catch (IOException e) {
+                // server stopped
+            }
+        });
+    }
+
+    @AfterEach
+    public void stopServer() throws IOException {
+        thread.interrupt();
+        try (var paths = Files.walk(root)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testGet() throws IOException {
+        assertEquals(PAGE, new HTTPClient(server, "/index.html").get());
+        assertEquals(PAGE, new HTTPClient(server, "/").get());
+        assertEquals("", new HTTPClient(server, "/missing.html").get());
+        assertEquals("", new HTTPClient(server, "/../index.html").get());
+    }
+
+    /**
+     * The body is sent with transferTo, it must be received whole
+     */
+    @Test
+    public void testDownloadLargeFile() throws IOException {
+        var content = new byte[10_000_000];
+        new Random(0).nextBytes(content);
+        Files.write(root.resolve("large.bin"), content);
+        var file = Files.createTempFile("HTTPFileServerTest", ".bin");
+        try {
+            assertEquals(content.length, new HTTPClient(server, "/large.bin").download(file));
+            assertEquals(-1, Files.mismatch(root.resolve("large.bin"), file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testKeepAlive() throws IOException, InterruptedException {
+        try (var pool = new HTTPConnectionPool(1, 4)) {
+            for (var i = 0; i < 20; i++) {
+                assertEquals(PAGE, new HTTPClient(server, "/index.html").get(pool));
+            }
+            assertEquals(1, pool.openedConnections());
+        }
+    }
+
+    @Test
+    public void testPipelinedRequests() throws IOException, InterruptedException {
+        try (var pool = new HTTPConnectionPool(1, 4)) {
+            var resources = List.of("/files/a.txt", "/missing.html", "/files/b%20c.txt", "/index.html");
+            var responses = HTTPClient.fetchAll(server, resources, pool);
+            assertEquals(List.of(200, 404, 200, 200), responses.stream().map(r -> r.header().getCode()).toList());
+            assertEquals("a", UTF_8.decode(responses.get(0).body().flip()).toString());
+            assertEquals("b c", UTF_8.decode(responses.get(2).body().flip()).toString());
+            assertEquals(PAGE, UTF_8.decode(responses.get(3).body().flip()).toString());
+            assertEquals(1, pool.openedConnections());
+        }
+    }
+
+    /**
+     * The listing of a directory without index.html has no length, it is chunked
+     */
+    @Test
+    public void testListingIsChunked() throws IOException, InterruptedException {
+        try (var pool = new HTTPConnectionPool(1, 4)) {
+            var response = HTTPClient.fetchAll(server, List.of("/files/"), pool).get(0);
+            assertTrue(response.header().isChunkedTransfer());
+            var listing = UTF_8.decode(response.body().flip()).toString();
+            assertTrue(listing.contains("<a href=\"a.txt\">a.txt</a>"));
+            assertTrue(listing.contains("<a href=\"b%20c.txt\">b c.txt</a>"));
+        }
+    }
+
+    /**
+     * An HTTP/1.0 client does not understand chunks, the listing ends with the connection
+     */
+    @Test
+    public void testListingHTTP10() throws IOException {
+        try (var sc = SocketChannel.open(server)) {
+            sc.write(US_ASCII.encode("GET /files HTTP/1.0\r\n\r\n"));
+            var reader = new HTTPReader(sc, ByteBuffer.allocate(1024));
+            var header = reader.readHeader();
+            assertEquals(200, header.getCode());
+            assertFalse(header.isChunkedTransfer());
+            assertEquals("close", header.getField("connection").orElseThrow());
+            var body = new ByteArrayOutputStream();
+            reader.readAll(BodySink.of(Channels.newChannel(body)));
+            assertTrue(body.toString(UTF_8).contains("<a href=\"files/a.txt\">a.txt</a>"));
+        }
+    }
+
+    /**
+     * Sends request on a new connection and reads the response, whose body has a
+     * Content-Length
+     */
+    private HTTPResponse send(String request) throws IOException {
+        try (var sc = SocketChannel.open(server)) {
+            sc.write(US_ASCII.encode(request));
+            var reader = new HTTPReader(sc, ByteBuffer.allocate(1024));
+            var header = reader.readHeader();
+            return new HTTPResponse(header, reader.readBytes(header.getContentLength()));
+        }
+    }
+
+    private HTTPResponse getRange(String resource, String range) throws IOException {
+        return send("GET " + resource + " HTTP/1.1\r\nHost: localhost\r\nRange: " + range
+                + "\r\nConnection: close\r\n\r\n");
+    }
+
+    @Test
+    public void testRange() throws IOException {
+        Files.writeString(root.resolve("digits.txt"), "0123456789");
+        var response = getRange("/digits.txt", "bytes=2-5");
+        assertEquals(206, response.header().getCode());
+        assertEquals("bytes 2-5/10", response.header().getField("content-range").orElseThrow());
+        assertEquals("2345", US_ASCII.decode(response.body().flip()).toString());
+        assertEquals("789", US_ASCII.decode(getRange("/digits.txt", "bytes=-3").body().flip()).toString());
+        assertEquals("89", US_ASCII.decode(getRange("/digits.txt", "bytes=8-100").body().flip()).toString());
+        assertEquals("6789", US_ASCII.decode(getRange("/digits.txt", "bytes=6-").body().flip()).toString());
+    }
+
+    @Test
+    public void testRangeIgnoredOrUnsatisfiable() throws IOException {
+        Files.writeString(root.resolve("digits.txt"), "0123456789");
+        var response = getRange("/digits.txt", "bytes=0-1,4-5");
+        assertEquals(200, response.header().getCode());
+        assertEquals("0123456789", US_ASCII.decode(response.body().flip()).toString());
+        assertEquals(200, getRange("/digits.txt", "lines=1-2").header().getCode());
+        response = getRange("/digits.txt", "bytes=10-");
+        assertEquals(416, response.header().getCode());
+        assertEquals("bytes */10", response.header().getField("content-range").orElseThrow());
+    }
+
+    /**
+     * A large file is sent from the file with transferTo, starting at the range
+     */
+    @Test
+    public void testRangeOfLargeFile() throws IOException {
+        var content = new byte[3_000_000];
+        new Random(0).nextBytes(content);
+        Files.write(root.resolve("large.bin"), content);
+        var response = getRange("/large.bin", "bytes=1000000-");
+        assertEquals(206, response.header().getCode());
+        assertEquals(ByteBuffer.wrap(content, 1_000_000, 2_000_000), response.body().flip());
+    }
+}
@@ -3,16 +3,21 @@ package fr.upem.net.tcp.http;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 import static fr.upem.net.tcp.http.HTTPException.ensure;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
 
 /**
  * @author carayol Class representing a HTTP header
+ * <p>
+ * The fields are kept as the raw bytes of the header by {@link HTTPFields}: a field is
+ * only decoded when it is asked for and the map of {@link #getFields()} is only built if
+ * it is used. The values of Content-Length, Content-Type and Transfer-Encoding are parsed
+ * once.
  */
 
 public class HTTPHeader {
@@ -25,19 +30,47 @@ public class HTTPHeader {
     public static final Set<String> SUPPORTED_VERSIONS = Collections
             .unmodifiableSet(new HashSet<>(Arrays.asList(LIST_SUPPORTED_VERSIONS)));
 
+    private static final String CONTENT_LENGTH = "content-length";
+    private static final String CONTENT_TYPE = "content-type";
+    private static final String TRANSFER_ENCODING = "transfer-encoding";
+    private static final long NOT_PARSED = Long.MIN_VALUE;
+
     private final String response;
     private final String version;
     private final int code;
-    private final Map<String, String> fields;
-
-    private HTTPHeader(String response, String version, int code, Map<String, String> fields) throws HTTPException {
+    private final HTTPFields headerFields;
+    // parsed on demand, a race only computes them twice
+    private volatile Map<String, String> fields;
+    private volatile long contentLength = NOT_PARSED;
+    private volatile Optional<String> contentType;
+    private volatile Optional<Charset> charset;
+    private volatile Boolean chunked;
+
+    private HTTPHeader(String response, String version, int code, HTTPFields headerFields) {
         this.response = response;
         this.version = version;
         this.code = code;
-        this.fields = Collections.unmodifiableMap(fields);
+        this.headerFields = headerFields;
     }
 
     public static HTTPHeader create(String response, Map<String, String> fields) throws HTTPException {
+        var builder = new StringBuilder(response).append("\r\n");
+        for (var field : fields.entrySet()) {
+            builder.append(field.getKey()).append(": ").append(field.getValue()).append("\r\n");
+        }
+        var raw = builder.toString().getBytes(ISO_8859_1);
+        return parse(raw, raw.length);
+    }
+
+    /**
+     * @param raw    the status line and the fields of a response, each line terminated
+     *               by CRLF, optionally followed by the empty line. The array is kept by
+     *               the header and must not be modified afterwards.
+     * @param length the number of bytes of raw to parse
+     */
+    static HTTPHeader parse(byte[] raw, int length) throws HTTPException {
+        var statusEnd = HTTPFields.lineEnd(raw, 0, length);
+        var response = new String(raw, 0, statusEnd, ISO_8859_1);
         String[] tokens = response.split(" ");
         // Treatment of the response line
         ensure(tokens.length >= 2, "Badly formed response:\n" + response);
@@ -50,11 +83,7 @@ public class HTTPHeader {
         } catch (NumberFormatException e) {
             ensure(false, "Invalid response:\n" + response);
         }
-        var fieldsCopied = new HashMap<String, String>();
-        for (var s : fields.keySet()) {
-            fieldsCopied.put(s.toLowerCase(), fields.get(s).trim());
-        }
-        return new HTTPHeader(response, version, code, fieldsCopied);
+        return new HTTPHeader(response, version, code, HTTPFields.parse(raw, statusEnd + 2, length));
     }
 
     public String getResponse() {
@@ -69,8 +98,23 @@ public class HTTPHeader {
         return code;
     }
 
+    /**
+     * @return the value of the field name, whatever the case of name, the values of a
+     * field present several times being separated by ';'
+     */
+    public Optional<String> getField(String name) {
+        return Optional.ofNullable(headerFields.value(name));
+    }
+
+    /**
+     * @return the fields with their names in lower case, built at the first call
+     */
     public Map<String, String> getFields() {
-        return fields;
+        var map = fields;
+        if (map == null) {
+            map = fields = headerFields.toMap();
+        }
+        return map;
     }
 
     /**
@@ -79,26 +123,48 @@ public class HTTPHeader {
      * @throws HTTPException when the value of Content-Length is not a number
      */
     public int getContentLength() throws HTTPException {
-        var contentString = fields.get("content-length");
-        if (contentString == null) {
-            return -1;
+        var length = getContentLengthLong();
+        if (length > Integer.MAX_VALUE) {
+            throw new HTTPException("Content-Length too large :\n" + length);
         }
-        try {
-            return Integer.parseInt(contentString.trim());
-        } catch (NumberFormatException e) {
-            throw new HTTPException("Invalid Content-Length field value :\n" + contentString);
+        return (int) length;
+    }
+
+    /**
+     * @return the value of the Content-Length field in the header -1 if the field
+     * does not exists, for bodies larger than 2 GiB
+     * @throws HTTPException when the value of Content-Length is not a number
+     */
+    public long getContentLengthLong() throws HTTPException {
+        var length = contentLength;
+        if (length != NOT_PARSED) {
+            return length;
+        }
+        var contentString = headerFields.value(CONTENT_LENGTH);
+        if (contentString == null) {
+            length = -1;
+        } else {
+            try {
+                length = Long.parseLong(contentString.trim());
+            } catch (NumberFormatException e) {
+                throw new HTTPException("Invalid Content-Length field value :\n" + contentString);
+            }
         }
+        contentLength = length;
+        return length;
     }
 
     /**
      * @return the Content-Type null if there is no Content-Type field
      */
     public Optional<String> getContentType() {
-        var contentString = fields.get("content-type");
-        if (contentString == null) {
-            return Optional.empty();
+        var type = contentType;
+        if (type == null) {
+            var contentString = headerFields.value(CONTENT_TYPE);
+            type = contentType = contentString == null ? Optional.empty()
+                    : Optional.of(contentString.split(";")[0].trim());
         }
-        return Optional.of(contentString.split(";")[0].trim());
+        return type;
     }
 
     /**
@@ -106,19 +172,25 @@ public class HTTPHeader {
      * charset is unknown or unavailable on the JVM
      */
     public Optional<Charset> getCharset() {
-        Charset cs = null;
-        var contentString = fields.get("content-type");
+        var cs = charset;
+        if (cs == null) {
+            cs = charset = parseCharset(headerFields.value(CONTENT_TYPE));
+        }
+        return cs;
+    }
+
+    private static Optional<Charset> parseCharset(String contentString) {
         if (contentString == null) {
             return Optional.empty();
         }
         for (var token : contentString.split(";")) {
             if (token.contains("charset=")) {
                 try {
-                    cs = Charset.forName(token.split("=")[1].trim());
+                    return Optional.of(Charset.forName(token.split("=")[1].trim()));
                 } catch (Exception e) {
                     // If the Charset is unknown or unavailable, the method return empty
+                    return Optional.empty();
                 }
-                return Optional.of(cs);
             }
         }
         return Optional.empty();
@@ -128,10 +200,15 @@ public class HTTPHeader {
      * @return true if the header correspond to a chunked response
      */
     public boolean isChunkedTransfer() {
-        return fields.containsKey("transfer-encoding") && fields.get("transfer-encoding").trim().equals("chunked");
+        var isChunked = chunked;
+        if (isChunked == null) {
+            var encoding = headerFields.value(TRANSFER_ENCODING);
+            isChunked = chunked = encoding != null && encoding.trim().equals("chunked");
+        }
+        return isChunked;
     }
 
     public String toString() {
-        return response + "\n" + version + " " + code + "\n" + fields.toString();
+        return response + "\n" + version + " " + code + "\n" + getFields().toString();
     }
-}
\ No newline at end of file
+}
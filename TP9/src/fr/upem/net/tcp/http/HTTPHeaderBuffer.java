@@ -0,0 +1,87 @@
+package fr.upem.net.tcp.http;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Accumulates the raw bytes of a header, up to the empty line, for
+ * {@link HTTPHeader#parse(byte[], int)} or {@link HTTPRequest#parse(byte[], int)}. The
+ * buffer is scanned for the end of the header and copied in bulk, no String is built
+ * before the header is complete.
+ */
+final class HTTPHeaderBuffer {
+
+    static final int MAX_HEADER_SIZE = 64 * 1024;
+    private static final int INITIAL_SIZE = 512;
+
+    private byte[] raw = new byte[INITIAL_SIZE];
+    private int length;
+
+    /**
+     * Consumes the bytes of buffer, which is in read-mode, up to the end of the header
+     *
+     * @return true if the header is complete
+     * @throws HTTPException if the header is larger than {@value #MAX_HEADER_SIZE}
+     *                       bytes
+     */
+    boolean fill(ByteBuffer buffer) throws HTTPException {
+        var start = buffer.position();
+        var end = -1;
+        for (var i = start; i < buffer.limit(); i++) {
+            // the header ends with CRLF CRLF, the first 3 bytes may be in raw already
+            if (buffer.get(i) == '\n' && byteAt(buffer, i - 1) == '\r' && byteAt(buffer, i - 2) == '\n'
+                    && byteAt(buffer, i - 3) == '\r') {
+                end = i;
+                break;
+            }
+        }
+        var count = (end == -1 ? buffer.limit() : end + 1) - start;
+        HTTPException.ensure(length + count <= MAX_HEADER_SIZE, "Header too large");
+        if (length + count > raw.length) {
+            raw = Arrays.copyOf(raw, Math.min(Math.max(2 * raw.length, length + count), MAX_HEADER_SIZE));
+        }
+        buffer.get(raw, length, count);
+        length += count;
+        return end != -1;
+    }
+
+    /**
+     * @return the byte at index i of buffer, or before its position in raw
+     */
+    private int byteAt(ByteBuffer buffer, int i) {
+        if (i >= buffer.position()) {
+            return buffer.get(i);
+        }
+        var rawIndex = length - (buffer.position() - i);
+        return rawIndex >= 0 ? raw[rawIndex] : -1;
+    }
+
+    /**
+     * @return the header accumulated, the buffer is then ready for the next one
+     */
+    HTTPHeader header() throws HTTPException {
+        try {
+            return HTTPHeader.parse(raw, length);
+        } finally {
+            // the header keeps the array
+            raw = new byte[INITIAL_SIZE];
+            length = 0;
+        }
+    }
+
+    /**
+     * @return the request accumulated, the buffer is then ready for the next one
+     */
+    HTTPRequest request() throws HTTPException {
+        try {
+            return HTTPRequest.parse(raw, length);
+        } finally {
+            raw = new byte[INITIAL_SIZE];
+            length = 0;
+        }
+    }
+
+    void reset() {
+        length = 0;
+    }
+}
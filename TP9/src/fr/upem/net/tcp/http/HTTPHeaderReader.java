@@ -0,0 +1,66 @@
+package fr.upem.net.tcp.http;
+
+import fr.upem.net.tcp.nonblocking.Reader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Nonblocking reader of the header of an HTTP response: the status line and the fields
+ * up to the empty line. It never reads the channel, so a client can parse many
+ * responses from a single selector, feeding each one with the bytes it received.
+ * <p>
+ * The body is left in the buffer, to be read with an {@link HTTPBodyReader}.
+ */
+public class HTTPHeaderReader implements Reader<HTTPHeader> {
+
+    private enum State {
+        DONE, WAITING, ERROR
+    }
+
+    private State state = State.WAITING;
+    private final HTTPHeaderBuffer headerBuffer = new HTTPHeaderBuffer();
+    private HTTPHeader header;
+
+    @Override
+    public ProcessStatus process(ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            return processReadMode(buffer);
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    @Override
+    public ProcessStatus processReadMode(ByteBuffer buffer) {
+        if (state == State.DONE || state == State.ERROR) {
+            throw new IllegalStateException();
+        }
+        try {
+            if (!headerBuffer.fill(buffer)) {
+                return ProcessStatus.REFILL;
+            }
+            header = headerBuffer.header();
+        } catch (HTTPException e) {
+            state = State.ERROR;
+            return ProcessStatus.ERROR;
+        }
+        state = State.DONE;
+        return ProcessStatus.DONE;
+    }
+
+    @Override
+    public HTTPHeader get() {
+        if (state != State.DONE) {
+            throw new IllegalStateException();
+        }
+        return header;
+    }
+
+    @Override
+    public void reset() {
+        state = State.WAITING;
+        headerBuffer.reset();
+        header = null;
+    }
+}
@@ -0,0 +1,81 @@
+package fr.upem.net.tcp.http;
+
+import fr.upem.net.tcp.nonblocking.Reader.ProcessStatus;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests suit for the class HTTPHeaderReader
+ */
+public class HTTPHeaderReaderTest {
+
+    private static final String RESPONSE = "HTTP/1.1 200 OK\r\n"
+            + "Content-Type: text/html; charset=utf-8\r\n"
+            + "Set-Cookie: a=1\r\n"
+            + "Set-Cookie: b=2\r\n"
+            + "Content-Length: 5\r\n"
+            + "\r\n"
+            + "hello";
+
+    @Test
+    public void testWholeHeader() {
+        var buffer = ByteBuffer.wrap(RESPONSE.getBytes(US_ASCII));
+        var reader = new HTTPHeaderReader();
+        assertEquals(ProcessStatus.DONE, reader.processReadMode(buffer));
+        var header = reader.get();
+        assertEquals(200, header.getCode());
+        assertEquals("a=1;b=2", header.getFields().get("set-cookie"));
+        assertEquals("hello", US_ASCII.decode(buffer).toString());
+    }
+
+    /**
+     * The bytes are given one by one, the CRLF are split between two calls
+     */
+    @Test
+    public void testByteByByte() throws HTTPException {
+        var bytes = RESPONSE.getBytes(US_ASCII);
+        var buffer = ByteBuffer.allocate(4);
+        var reader = new HTTPHeaderReader();
+        var status = ProcessStatus.REFILL;
+        var i = 0;
+        while (status == ProcessStatus.REFILL) {
+            buffer.put(bytes[i++]);
+            status = reader.process(buffer);
+        }
+        assertEquals(ProcessStatus.DONE, status);
+        assertEquals(5, reader.get().getContentLength());
+        assertEquals("text/html", reader.get().getContentType().orElseThrow());
+        assertEquals(RESPONSE.indexOf("hello"), i);
+    }
+
+    @Test
+    public void testGetFieldIgnoresCase() {
+        var buffer = ByteBuffer.wrap(RESPONSE.getBytes(US_ASCII));
+        var reader = new HTTPHeaderReader();
+        assertEquals(ProcessStatus.DONE, reader.processReadMode(buffer));
+        var header = reader.get();
+        assertEquals("a=1;b=2", header.getField("SET-COOKIE").orElseThrow());
+        assertEquals("5", header.getField("content-length").orElseThrow());
+        assertTrue(header.getField("Location").isEmpty());
+    }
+
+    @Test
+    public void testHeaderTooLarge() {
+        var field = "X-Padding: " + "a".repeat(HTTPHeaderBuffer.MAX_HEADER_SIZE) + "\r\n";
+        var buffer = ByteBuffer.wrap(("HTTP/1.1 200 OK\r\n" + field + "\r\n").getBytes(US_ASCII));
+        assertEquals(ProcessStatus.ERROR, new HTTPHeaderReader().processReadMode(buffer));
+    }
+
+    @Test
+    public void testMalformedHeader() {
+        var buffer = ByteBuffer.wrap("HTTP/1.1 200 OK\r\nNoColon\r\n\r\n".getBytes(US_ASCII));
+        assertEquals(ProcessStatus.ERROR, new HTTPHeaderReader().processReadMode(buffer));
+        buffer = ByteBuffer.wrap("FTP/1.1 200 OK\r\n\r\n".getBytes(US_ASCII));
+        assertEquals(ProcessStatus.ERROR, new HTTPHeaderReader().processReadMode(buffer));
+    }
+}
@@ -3,18 +3,23 @@ package fr.upem.net.tcp.http;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SocketChannel;
-import java.util.HashMap;
 
 import static java.nio.charset.StandardCharsets.US_ASCII;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
 public class HTTPReader {
 
-    private final SocketChannel sc;
+    private final ReadableByteChannel sc;
     private final ByteBuffer buffer;
 
-    public HTTPReader(SocketChannel sc, ByteBuffer buffer) {
+    /**
+     * @param sc     the channel to read from, usually a SocketChannel
+     * @param buffer the buffer in write mode in which sc is read, it may already
+     *               contain data read from sc
+     */
+    public HTTPReader(ReadableByteChannel sc, ByteBuffer buffer) {
         this.sc = sc;
         this.buffer = buffer;
     }
@@ -57,18 +62,19 @@ public class HTTPReader {
      *                     could be read or if the header is ill-formed
      */
     public HTTPHeader readHeader() throws IOException {
-        var fields = new HashMap<String, String>();
-
-        var response = readLineCRLF();
-        String line;
-        do {
-            line = readLineCRLF();
-            if (!line.isEmpty()) {
-                var split = line.split(": ");
-                fields.compute(split[0], (k, v) -> v == null ? split[1] : v + ";" + split[1]);
+        var header = new HTTPHeaderBuffer();
+
+        buffer.flip();
+        while (!header.fill(buffer)) {
+            buffer.clear();
+            if (sc.read(buffer) == -1) {
+                throw new HTTPException("Connection closed before the end of the header");
             }
-        } while (!line.isEmpty());
-        return HTTPHeader.create(response, fields);
+            buffer.flip();
+        }
+        buffer.compact();
+
+        return header.header();
     }
 
     /**
@@ -78,26 +84,87 @@ public class HTTPReader {
      * The method assume that buffer is in write mode and leaves it in
      * write mode The method process the data from the buffer and if necessary
      * will read more data from the socket.
-     * @throws IOException HTTPException is the connection is closed before all
+     * @throws IOException HTTPException if the connection is closed before all
      *                     bytes could be read
      */
     public ByteBuffer readBytes(int size) throws IOException {
         var result = ByteBuffer.allocate(size);
+        readBytes(size, result::put);
+        return result;
+    }
+
+    /**
+     * Streams size bytes to sink, going through the buffer only for the bytes it
+     * already contains if the sink can read the socket itself
+     * <p>
+     * The method assume that buffer is in write mode and leaves it in write mode.
+     *
+     * @throws IOException HTTPException if the connection is closed before all bytes
+     *                     could be read
+     */
+    public void readBytes(long size, BodySink sink) throws IOException {
+        if (transfer(size, sink) != size) {
+            throw new HTTPException("Connection closed before the end of the body");
+        }
+    }
+
+    /**
+     * Streams all the bytes until the end of the stream to sink, for the bodies
+     * delimited by the end of the connection
+     *
+     * @return the number of bytes written to sink
+     */
+    public long readAll(BodySink sink) throws IOException {
+        return transfer(Long.MAX_VALUE, sink);
+    }
 
+    /**
+     * Writes at most size bytes to sink, stopping at the end of the stream
+     *
+     * @return the number of bytes written to sink
+     */
+    private long transfer(long size, BodySink sink) throws IOException {
+        var remaining = size;
         buffer.flip();
-        while (result.hasRemaining()) {
-            if (!buffer.hasRemaining()) {
-                buffer.clear();
-                if (sc.read(buffer) == -1) {
-                    return result;
+        try {
+            remaining -= drain(remaining, sink);
+            while (remaining > 0) {
+                var transferred = sink.transferFrom(sc, remaining);
+                if (transferred == 0) {
+                    break;
+                }
+                if (transferred > 0) {
+                    remaining -= transferred;
+                    continue;
                 }
+                // the sink cannot read the socket itself, the bytes go through buffer
+                buffer.clear().limit((int) Math.min(remaining, buffer.capacity()));
+                var read = sc.read(buffer);
                 buffer.flip();
+                if (read == -1) {
+                    break;
+                }
+                remaining -= drain(remaining, sink);
             }
-            result.put(buffer.get());
+            return size - remaining;
+        } finally {
+            buffer.compact();
         }
-        buffer.compact();
+    }
 
-        return result;
+    /**
+     * Writes at most max bytes of buffer, in read mode, to sink
+     *
+     * @return the number of bytes written
+     */
+    private int drain(long max, BodySink sink) throws IOException {
+        var count = (int) Math.min(max, buffer.remaining());
+        if (count == 0) {
+            return 0;
+        }
+        sink.write(buffer.slice(buffer.position(), count));
+        buffer.position(buffer.position() + count);
+        return count;
     }
 
     /**
@@ -106,30 +173,58 @@ public class HTTPReader {
      *                     of the chunks if chunks are ill-formed
      */
     public ByteBuffer readChunks() throws IOException {
-        var result = ByteBuffer.allocate(0);
+        var sink = new ByteBufferSink();
+        readChunks(sink);
+        return sink.result;
+    }
 
-        var size = -1;
+    /**
+     * Streams the content of a body in chunks mode to sink, the trailer fields are
+     * ignored
+     *
+     * @return the number of bytes written to sink
+     * @throws IOException HTTPException if the connection is closed before the end
+     *                     of the chunks if chunks are ill-formed
+     */
+    public long readChunks(BodySink sink) throws IOException {
+        var total = 0L;
         try {
-            do {
-                var e = readLineCRLF();
-                size = Integer.parseInt(e, 16);
-                var line = readBytes(size);
-                readBytes(2);
-                result = concat(result, line);
-            } while (size != 0);
+            for (;;) {
+                var line = readLineCRLF();
+                var semicolon = line.indexOf(';');
+                var size = Long.parseLong((semicolon == -1 ? line : line.substring(0, semicolon)).trim(), 16);
+                HTTPException.ensure(size >= 0, "Malformed chunked body");
+                if (size == 0) {
+                    while (!readLineCRLF().isEmpty()) {
+                        // skip the trailer fields
+                    }
+                    return total;
+                }
+                readBytes(size, sink);
+                total += size;
+                HTTPException.ensure(readLineCRLF().isEmpty(), "Malformed chunked body");
+            }
         } catch (NumberFormatException e) {
             throw new HTTPException("Malformed chunked body");
         }
-        return result;
     }
 
-    private ByteBuffer concat(ByteBuffer dst, ByteBuffer src) {
-        dst.flip();
-        src.flip();
-        var newBuffer = ByteBuffer.allocate(dst.remaining() + src.remaining());
-        newBuffer.put(dst);
-        newBuffer.put(src);
-        return newBuffer;
+    /**
+     * Sink accumulating the bytes in a ByteBuffer whose capacity doubles when needed
+     */
+    private static final class ByteBufferSink implements BodySink {
+        private ByteBuffer result = ByteBuffer.allocate(1024); // write-mode
+
+        @Override
+        public void write(ByteBuffer data) throws HTTPException {
+            if (result.remaining() < data.remaining()) {
+                var needed = (long) result.position() + data.remaining();
+                HTTPException.ensure(needed <= Integer.MAX_VALUE - 8, "Body too large for a ByteBuffer");
+                var capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(2L * result.capacity(), needed));
+                result = ByteBuffer.allocate(capacity).put(result.flip());
+            }
+            result.put(data);
+        }
     }
 
     public static void main(String[] args) throws IOException {
@@ -137,6 +137,25 @@ public class HTTPReaderTest {
         }
     }
 
+    /**
+     * Test for readBytes with FakeServer closing the connection before all bytes
+     */
+    @Test
+    public void testReadBytesConnectionClosed() throws IOException {
+        FakeHTTPServer server = new FakeHTTPServer("DEFGH", 4);
+        try {
+            server.serve();
+            SocketChannel sc = SocketChannel.open();
+            sc.connect(new InetSocketAddress("localhost", server.getPort()));
+            var buff = ByteBuffer.allocate(12);
+            buff.put("AA\r\nB".getBytes(US_ASCII));
+            HTTPReader reader = new HTTPReader(sc, buff);
+            assertThrows(HTTPException.class, () -> reader.readBytes(20));
+        } finally {
+            server.shutdown();
+        }
+    }
+
     /**
      * Test for readBytes with FakeServer
      */
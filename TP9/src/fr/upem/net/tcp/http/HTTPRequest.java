@@ -0,0 +1,74 @@
+package fr.upem.net.tcp.http;
+
+import java.util.Optional;
+
+import static fr.upem.net.tcp.http.HTTPException.ensure;
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * Header of an HTTP/1.x request received by {@link HTTPFileServer}: the request line
+ * and the fields, kept undecoded by {@link HTTPFields}.
+ */
+final class HTTPRequest {
+
+    private final String method;
+    private final String target;
+    private final String version;
+    private final HTTPFields fields;
+
+    private HTTPRequest(String method, String target, String version, HTTPFields fields) {
+        this.method = method;
+        this.target = target;
+        this.version = version;
+        this.fields = fields;
+    }
+
+    /**
+     * @param raw    the request line and the fields, each line terminated by CRLF. The
+     *               array is kept by the request and must not be modified afterwards.
+     * @param length the number of bytes of raw to parse
+     */
+    static HTTPRequest parse(byte[] raw, int length) throws HTTPException {
+        var lineEnd = HTTPFields.lineEnd(raw, 0, length);
+        var line = new String(raw, 0, lineEnd, ISO_8859_1);
+        var tokens = line.split(" ");
+        ensure(tokens.length == 3, "Badly formed request:\n" + line);
+        ensure(tokens[2].equals("HTTP/1.0") || tokens[2].equals("HTTP/1.1"), "Unsupported version in request:\n"
+                + line);
+        return new HTTPRequest(tokens[0], tokens[1], tokens[2], HTTPFields.parse(raw, lineEnd + 2, length));
+    }
+
+    String method() {
+        return method;
+    }
+
+    /**
+     * @return the resource as sent by the client, with its query and its percent-encoding
+     */
+    String target() {
+        return target;
+    }
+
+    String version() {
+        return version;
+    }
+
+    /**
+     * @return the value of the field name, whatever the case of name
+     */
+    Optional<String> getField(String name) {
+        return Optional.ofNullable(fields.value(name));
+    }
+
+    /**
+     * @return true if the client accepts another request on the connection after the
+     * response: the default in HTTP/1.1, only if asked for in HTTP/1.0
+     */
+    boolean isKeepAlive() {
+        var connection = getField("connection").orElse("").toLowerCase();
+        if (version.equals("HTTP/1.1")) {
+            return !connection.contains("close");
+        }
+        return connection.contains("keep-alive");
+    }
+}
@@ -0,0 +1,16 @@
+package fr.upem.net.tcp.http;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Response read entirely: its header and its body in a ByteBuffer in write-mode,
+ * empty if the response has no body
+ */
+public record HTTPResponse(HTTPHeader header, ByteBuffer body) {
+
+    public HTTPResponse {
+        Objects.requireNonNull(header);
+        Objects.requireNonNull(body);
+    }
+}
@@ -0,0 +1,244 @@
+package fr.upem.net.tcp.http;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of the 200 responses fetched by {@link HTTPClient} with a cache, holding at
+ * most maxBytes bytes of bodies and evicting the least recently used responses beyond
+ * that.
+ * <p>
+ * A response is stored if its Cache-Control field does not forbid it, if its body has
+ * the length given by Content-Length, and if it is fresh for some time (max-age) or
+ * can be revalidated (ETag or Last-Modified). A fresh response is served without
+ * contacting the server. A stale one is revalidated with If-None-Match or
+ * If-Modified-Since, and served again if the server answers 304 Not Modified, which
+ * has no body.
+ */
+public final class HTTPResponseCache {
+
+    private record Key(InetSocketAddress server, String resource) {
+    }
+
+    static final class Entry {
+        private final HTTPHeader header;
+        private final byte[] body;
+        private final String etag;
+        private final String lastModified;
+        private long freshUntil; // in nanos of the clock
+
+        private Entry(HTTPHeader header, byte[] body, long freshUntil) {
+            this.header = header;
+            this.body = body;
+            this.etag = header.getField("etag").orElse(null);
+            this.lastModified = header.getField("last-modified").orElse(null);
+            this.freshUntil = freshUntil;
+        }
+
+        /**
+         * @return the fields to add to the request to revalidate this entry
+         */
+        String conditionalFields() {
+            var fields = new StringBuilder();
+            if (etag != null) {
+                fields.append("If-None-Match: ").append(etag).append("\r\n");
+            }
+            if (lastModified != null) {
+                fields.append("If-Modified-Since: ").append(lastModified).append("\r\n");
+            }
+            return fields.toString();
+        }
+
+        private HTTPResponse response() {
+            // the body is shared by all the hits, it must not be modified
+            return new HTTPResponse(header, ByteBuffer.wrap(body).asReadOnlyBuffer().position(body.length));
+        }
+    }
+
+    private static final long NOT_CACHEABLE = -1;
+    private static final long UNKNOWN = -2;
+
+    private final long maxBytes;
+    private final LongSupplier clock; // System.nanoTime except in the tests
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long revalidations;
+
+    public HTTPResponseCache(long maxBytes) {
+        this(maxBytes, System::nanoTime);
+    }
+
+    HTTPResponseCache(long maxBytes, LongSupplier clock) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("The size of the cache must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * @return the entry of resource, fresh or stale, or null if it is not cached
+     */
+    synchronized Entry lookup(InetSocketAddress server, String resource) {
+        return entries.get(new Key(server, resource));
+    }
+
+    /**
+     * @return the response of entry if it is fresh, counting a hit, otherwise null
+     */
+    synchronized HTTPResponse hit(Entry entry) {
+        if (clock.getAsLong() - entry.freshUntil >= 0) {
+            return null;
+        }
+        hits++;
+        return entry.response();
+    }
+
+    /**
+     * Serves entry again after the server answered notModified, a 304, to its
+     * revalidation, and updates its freshness with the Cache-Control of notModified,
+     * or of the stored response if notModified has none
+     */
+    synchronized HTTPResponse revalidated(Entry entry, HTTPHeader notModified) {
+        revalidations++;
+        var header = notModified.getField("cache-control").isPresent() ? notModified : entry.header;
+        var freshness = freshness(header);
+        if (freshness >= 0) {
+            entry.freshUntil = clock.getAsLong() + freshness;
+        }
+        return entry.response();
+    }
+
+    /**
+     * Counts a miss for resource, and stores response if it can be cached
+     */
+    synchronized void miss(InetSocketAddress server, String resource, HTTPResponse response) {
+        misses++;
+        var key = new Key(server, resource);
+        remove(key);
+        var header = response.header();
+        var freshness = freshness(header);
+        if (header.getCode() != 200 || freshness == NOT_CACHEABLE) {
+            return;
+        }
+        if (freshness == 0 && header.getField("etag").isEmpty() && header.getField("last-modified").isEmpty()) {
+            return; // would never be served
+        }
+        var body = response.body().duplicate().flip();
+        if (body.remaining() > maxBytes || !isComplete(header, body)) {
+            return;
+        }
+        var content = new byte[body.remaining()];
+        body.get(content);
+        entries.put(key, new Entry(header, content, clock.getAsLong() + freshness));
+        bytes += content.length;
+        var iterator = entries.values().iterator();
+        while (bytes > maxBytes) {
+            bytes -= iterator.next().body.length;
+            iterator.remove();
+        }
+    }
+
+    /**
+     * @return false if body, in read mode, is shorter or longer than the Content-Length
+     * of header, so that a response cut short is never served again
+     */
+    private static boolean isComplete(HTTPHeader header, ByteBuffer body) {
+        try {
+            var contentLength = header.getContentLengthLong();
+            return contentLength == -1 || contentLength == body.remaining();
+        } catch (HTTPException e) {
+            return false;
+        }
+    }
+
+    private void remove(Key key) {
+        var entry = entries.remove(key);
+        if (entry != null) {
+            bytes -= entry.body.length;
+        }
+    }
+
+    /**
+     * @return how long, in nanoseconds, a response with header is fresh according to
+     * its Cache-Control field: 0 if it must always be revalidated, NOT_CACHEABLE if it
+     * must not be stored
+     */
+    private static long freshness(HTTPHeader header) {
+        var cacheControl = header.getField("cache-control").orElse(null);
+        if (cacheControl == null) {
+            return 0;
+        }
+        var maxAge = UNKNOWN;
+        var noCache = false;
+        for (var directive : cacheControl.split("[,;]")) {
+            directive = directive.trim().toLowerCase();
+            if (directive.equals("no-store")) {
+                return NOT_CACHEABLE;
+            }
+            if (directive.equals("no-cache")) {
+                noCache = true;
+            } else if (directive.startsWith("max-age=")) {
+                try {
+                    maxAge = Math.max(0, Long.parseLong(directive.substring("max-age=".length())));
+                } catch (NumberFormatException e) {
+                    maxAge = 0;
+                }
+            }
+        }
+        if (noCache || maxAge == UNKNOWN) {
+            return 0;
+        }
+        var age = 0L;
+        try {
+            age = Long.parseLong(header.getField("age").orElse("0").trim());
+        } catch (NumberFormatException e) {
+            // ignore a malformed Age
+        }
+        return TimeUnit.SECONDS.toNanos(Math.max(0, maxAge - age));
+    }
+
+    /**
+     * @return the number of responses served without contacting the server
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of responses fetched entirely from the server
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of stale responses served again after a 304 Not Modified
+     */
+    public synchronized long revalidations() {
+        return revalidations;
+    }
+
+    /**
+     * @return the number of bytes of the bodies in the cache
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "HTTPResponseCache[" + entries.size() + " responses, " + bytes + "/" + maxBytes + " bytes, hits="
+                + hits + ", misses=" + misses + ", revalidations=" + revalidations + "]";
+    }
+}
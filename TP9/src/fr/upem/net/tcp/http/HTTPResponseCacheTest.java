@@ -0,0 +1,72 @@
+package fr.upem.net.tcp.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests suit for the class HTTPResponseCache
+ */
+public class HTTPResponseCacheTest {
+
+    private static final InetSocketAddress SERVER = InetSocketAddress.createUnresolved("example.com", 80);
+
+    private long now;
+
+    private static HTTPResponse response(Map<String, String> fields, String body) throws HTTPException {
+        return new HTTPResponse(HTTPHeader.create("HTTP/1.1 200 OK", fields), US_ASCII.encode(body).compact());
+    }
+
+    private static String body(HTTPResponse response) {
+        return US_ASCII.decode(response.body().duplicate().flip()).toString();
+    }
+
+    @Test
+    public void testFreshThenRevalidated() throws HTTPException {
+        var cache = new HTTPResponseCache(1024, () -> now);
+        cache.miss(SERVER, "/", response(Map.of("Cache-Control", "public, max-age=60", "ETag", "\"v1\""), "hello"));
+        var entry = cache.lookup(SERVER, "/");
+        now += TimeUnit.SECONDS.toNanos(59);
+        assertEquals("hello", body(cache.hit(entry)));
+        now += TimeUnit.SECONDS.toNanos(1);
+        assertNull(cache.hit(entry));
+        assertEquals("If-None-Match: \"v1\"\r\n", entry.conditionalFields());
+        var notModified = HTTPHeader.create("HTTP/1.1 304 Not Modified", Map.of());
+        assertEquals("hello", body(cache.revalidated(entry, notModified)));
+        assertNotNull(cache.hit(entry));
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.revalidations());
+    }
+
+    @Test
+    public void testNotStored() throws HTTPException {
+        var cache = new HTTPResponseCache(1024, () -> now);
+        cache.miss(SERVER, "/a", response(Map.of("Cache-Control", "no-store", "ETag", "\"v1\""), "a"));
+        cache.miss(SERVER, "/b", response(Map.of(), "b"));
+        cache.miss(SERVER, "/c", response(Map.of("Cache-Control", "max-age=60", "Content-Length", "100"), "cut short"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws HTTPException {
+        var cache = new HTTPResponseCache(10, () -> now);
+        var fields = Map.of("Last-Modified", "Mon, 27 Jul 2009 12:28:53 GMT");
+        cache.miss(SERVER, "/a", response(fields, "aaaa"));
+        cache.miss(SERVER, "/b", response(fields, "bbbb"));
+        cache.lookup(SERVER, "/a");
+        cache.miss(SERVER, "/c", response(fields, "cccc"));
+        assertNotNull(cache.lookup(SERVER, "/a"));
+        assertNull(cache.lookup(SERVER, "/b"));
+        assertNotNull(cache.lookup(SERVER, "/c"));
+        assertEquals(8, cache.bytes());
+    }
+}
@@ -0,0 +1,111 @@
+package fr.upem.net.tcp.http;
+
+import fr.upem.net.tcp.nonblocking.Reader;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Reader of an ASCII line terminated by CRLF, {@link #get()} returns it without the
+ * CRLF. A LF alone does not end the line, as in {@link HTTPReader#readLineCRLF()}.
+ * <p>
+ * The buffer is scanned for the LF, then the whole line is copied at once: when it
+ * arrives in a single read, the only allocation is the String.
+ */
+public class LineReader implements Reader<String> {
+
+    private enum State {
+        DONE, WAITING, ERROR
+    }
+
+    static final int DEFAULT_MAX_LENGTH = 8 * 1024;
+
+    private final int maxLength;
+    private State state = State.WAITING;
+    private byte[] line = new byte[128];
+    private int length; // bytes of the line read so far, CRLF included
+    private String value;
+
+    public LineReader() {
+        this(DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * @param maxLength the maximum length of a line, CRLF included, longer lines are
+     *                  an ERROR
+     */
+    public LineReader(int maxLength) {
+        if (maxLength < 2) {
+            throw new IllegalArgumentException("A line is at least 2 bytes long");
+        }
+        this.maxLength = maxLength;
+    }
+
+    @Override
+    public ProcessStatus process(ByteBuffer buffer) {
+        buffer.flip();
+        try {
+            return processReadMode(buffer);
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    @Override
+    public ProcessStatus processReadMode(ByteBuffer buffer) {
+        if (state == State.DONE || state == State.ERROR) {
+            throw new IllegalStateException();
+        }
+        var end = lineEnd(buffer);
+        var count = (end == -1 ? buffer.limit() : end + 1) - buffer.position();
+        if (length + count > maxLength) {
+            state = State.ERROR;
+            return ProcessStatus.ERROR;
+        }
+        if (length + count > line.length) {
+            line = Arrays.copyOf(line, Math.min(Math.max(2 * line.length, length + count), maxLength));
+        }
+        buffer.get(line, length, count);
+        length += count;
+        if (end == -1) {
+            return ProcessStatus.REFILL;
+        }
+        value = new String(line, 0, length - 2, US_ASCII);
+        state = State.DONE;
+        return ProcessStatus.DONE;
+    }
+
+    /**
+     * @return the index in buffer of the LF ending the line, -1 if it is not there yet
+     */
+    private int lineEnd(ByteBuffer buffer) {
+        var start = buffer.position();
+        for (var i = start; i < buffer.limit(); i++) {
+            if (buffer.get(i) != '\n') {
+                continue;
+            }
+            var previous = i > start ? buffer.get(i - 1) : length > 0 ? line[length - 1] : 0;
+            if (previous == '\r') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String get() {
+        if (state != State.DONE) {
+            throw new IllegalStateException();
+        }
+        return value;
+    }
+
+    @Override
+    public void reset() {
+        state = State.WAITING;
+        length = 0;
+        value = null;
+    }
+}
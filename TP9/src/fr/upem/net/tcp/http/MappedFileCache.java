@@ -0,0 +1,183 @@
+package fr.upem.net.tcp.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashMap;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Cache of the files served by {@link HTTPFileServer}, mapped in memory, so that a file
+ * requested again is sent from its mapping without reading it.
+ * <p>
+ * Only the files of at most maxFileSize bytes are mapped, and the least recently used
+ * mappings are dropped once they hold more than maxBytes bytes. A mapping cannot be
+ * unmapped explicitly, the memory is given back when the garbage collector frees it.
+ * <p>
+ * A file is only mapped on its minRequests-th lookup, the previous ones return null
+ * and the file is sent from its channel, so that a scan over files requested once
+ * does not evict the mappings of the frequently requested ones. The lookups of the
+ * files not mapped yet are counted for the {@value #MAX_CANDIDATES} most recent files.
+ * <p>
+ * Each lookup checks the modification time and the size of the file, and maps it again
+ * if one of them changed. A file truncated while it is mapped cannot be read safely, the
+ * files served must be replaced rather than modified in place.
+ */
+public final class MappedFileCache {
+
+    private static final int DEFAULT_MIN_REQUESTS = 2;
+    private static final int MAX_CANDIDATES = 4096;
+
+    private record Entry(MappedByteBuffer buffer, FileTime lastModified, long size) {
+    }
+
+    private final long maxBytes;
+    private final long maxFileSize;
+    private final int minRequests;
+    private final LinkedHashMap<Path, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // number of lookups of the files not mapped, guarded by entries
+    private final LinkedHashMap<Path, Integer> candidates = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+
+    public MappedFileCache(long maxBytes, long maxFileSize) {
+        this(maxBytes, maxFileSize, DEFAULT_MIN_REQUESTS);
+    }
+
+    /**
+     * @param minRequests the number of lookups of a file after which it is mapped
+     */
+    public MappedFileCache(long maxBytes, long maxFileSize, int minRequests) {
+        if (maxBytes < 0 || maxFileSize < 0) {
+            throw new IllegalArgumentException("The sizes of the cache must be positive");
+        }
+        if (minRequests <= 0) {
+            throw new IllegalArgumentException("The number of requests before mapping must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.maxFileSize = Math.min(maxFileSize, Math.min(maxBytes, Integer.MAX_VALUE));
+        this.minRequests = minRequests;
+    }
+
+    /**
+     * @return the content of the file path, in read-mode, or null if it is not a regular
+     * file, it is too large to be mapped or it was not requested often enough yet. The
+     * buffer is read-only and is only used by the caller, the mapping is shared.
+     * @throws IOException if the file cannot be read
+     */
+    public ByteBuffer get(Path path) throws IOException {
+        var attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        if (!attributes.isRegularFile() || attributes.size() > maxFileSize) {
+            return null;
+        }
+        synchronized (entries) {
+            var entry = entries.get(path);
+            if (entry != null && entry.lastModified.equals(attributes.lastModifiedTime())
+                    && entry.size == attributes.size()) {
+                hits++;
+                return entry.buffer.duplicate();
+            }
+            remove(path);
+            // a file modified since it was mapped is still requested often
+            if (entry == null && !admit(path)) {
+                return null;
+            }
+            misses++;
+        }
+        MappedByteBuffer buffer;
+        try (var channel = FileChannel.open(path, READ)) {
+            // the file may have changed since its attributes were read, its current size
+            // is mapped, a later modification time makes the next lookup map it again
+            var size = channel.size();
+            if (size > maxFileSize) {
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        synchronized (entries) {
+            remove(path);
+            entries.put(path, new Entry(buffer, attributes.lastModifiedTime(), buffer.capacity()));
+            bytes += buffer.capacity();
+            var iterator = entries.values().iterator();
+            while (bytes > maxBytes) {
+                bytes -= iterator.next().size;
+                iterator.remove();
+            }
+        }
+        return buffer.duplicate();
+    }
+
+    /**
+     * Counts a lookup of path, which is not mapped
+     *
+     * @return true if path was requested often enough to be mapped
+     */
+    private boolean admit(Path path) {
+        var requests = candidates.merge(path, 1, Integer::sum);
+        if (requests >= minRequests) {
+            candidates.remove(path);
+            return true;
+        }
+        if (candidates.size() > MAX_CANDIDATES) {
+            var iterator = candidates.keySet().iterator();
+            iterator.next();
+            iterator.remove();
+        }
+        return false;
+    }
+
+    private void remove(Path path) {
+        var entry = entries.remove(path);
+        if (entry != null) {
+            bytes -= entry.size;
+        }
+    }
+
+    /**
+     * @return the number of lookups served by a mapping
+     */
+    public long hits() {
+        synchronized (entries) {
+            return hits;
+        }
+    }
+
+    /**
+     * @return the number of lookups that mapped the file
+     */
+    public long misses() {
+        synchronized (entries) {
+            return misses;
+        }
+    }
+
+    /**
+     * @return the number of bytes mapped
+     */
+    public long bytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (entries) {
+            return "MappedFileCache[" + entries.size() + " files, " + bytes + "/" + maxBytes + " bytes, hits=" + hits
+                    + ", misses=" + misses + "]";
+        }
+    }
+}
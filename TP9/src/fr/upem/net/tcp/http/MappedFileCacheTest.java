@@ -0,0 +1,134 @@
+package fr.upem.net.tcp.http;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests suit for the class MappedFileCache
+ */
+public class MappedFileCacheTest {
+
+    private Path directory;
+
+    @BeforeEach
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("MappedFileCacheTest");
+    }
+
+    @AfterEach
+    public void deleteDirectory() throws IOException {
+        try (var paths = Files.walk(directory)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(directory.resolve(name), content, US_ASCII);
+    }
+
+    private static String content(ByteBuffer buffer) {
+        return US_ASCII.decode(buffer).toString();
+    }
+
+    @Test
+    public void testHit() throws IOException {
+        var cache = new MappedFileCache(1024, 100, 1);
+        var file = write("a.txt", "hello");
+        assertEquals("hello", content(cache.get(file)));
+        // the buffer returned is not shared, consuming it does not change the next one
+        assertEquals("hello", content(cache.get(file)));
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+        assertEquals(5, cache.bytes());
+    }
+
+    @Test
+    public void testMappedOnlyAfterMinRequests() throws IOException {
+        var cache = new MappedFileCache(1024, 100, 2);
+        var file = write("a.txt", "hello");
+        assertNull(cache.get(file));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+        assertEquals("hello", content(cache.get(file)));
+        assertEquals("hello", content(cache.get(file)));
+        assertEquals(1, cache.misses());
+        assertEquals(1, cache.hits());
+    }
+
+    /**
+     * Files requested once do not evict the mapping of a file requested often
+     */
+    @Test
+    public void testColdFilesDoNotEvict() throws IOException {
+        var cache = new MappedFileCache(10, 10, 2);
+        var hot = write("hot.txt", "hhhh");
+        cache.get(hot);
+        cache.get(hot);
+        for (var i = 0; i < 10; i++) {
+            assertNull(cache.get(write(i + ".txt", "cccc")));
+        }
+        assertEquals(1, cache.size());
+        assertEquals("hhhh", content(cache.get(hot)));
+    }
+
+    @Test
+    public void testInvalidMinRequests() {
+        assertThrows(IllegalArgumentException.class, () -> new MappedFileCache(1024, 100, 0));
+    }
+
+    @Test
+    public void testModifiedFileIsMappedAgain() throws IOException {
+        var cache = new MappedFileCache(1024, 100, 1);
+        var file = write("a.txt", "hello");
+        var modified = Files.getLastModifiedTime(file).toMillis();
+        assertEquals("hello", content(cache.get(file)));
+        // same size, only the modification time tells the file changed
+        Files.delete(file);
+        write("a.txt", "world");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(modified + 1000));
+        assertEquals("world", content(cache.get(file)));
+        assertEquals(2, cache.misses());
+        assertEquals(5, cache.bytes());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws IOException {
+        var cache = new MappedFileCache(10, 10, 1);
+        var a = write("a.txt", "aaaa");
+        var b = write("b.txt", "bbbb");
+        var c = write("c.txt", "cccc");
+        cache.get(a);
+        cache.get(b);
+        cache.get(a);
+        cache.get(c);
+        assertEquals(2, cache.size());
+        assertEquals(8, cache.bytes());
+        cache.get(a);
+        assertEquals(2, cache.hits());
+        cache.get(b);
+        assertEquals(4, cache.misses());
+    }
+
+    @Test
+    public void testLargeFileNotMapped() throws IOException {
+        var cache = new MappedFileCache(1024, 4, 1);
+        assertNull(cache.get(write("a.txt", "hello")));
+        assertNull(cache.get(directory));
+        assertEquals(0, cache.size());
+    }
+}
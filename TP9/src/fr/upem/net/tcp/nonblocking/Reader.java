@@ -0,0 +1,38 @@
+package fr.upem.net.tcp.nonblocking;
+
+import java.nio.ByteBuffer;
+
+public interface Reader<T> {
+
+    enum ProcessStatus {DONE, REFILL, ERROR}
+
+    /**
+     * Process the content of bb, which is in write-mode before and after the call
+     */
+    ProcessStatus process(ByteBuffer bb);
+
+    /**
+     * Process the content of bb, which is in read-mode before and after the call.
+     * <p>
+     * The bytes consumed are the ones before the position of bb, the others are left
+     * for the next reader: the caller can process several frames in a row and compact
+     * bb only once. On REFILL, every remaining byte of bb has been consumed.
+     * <p>
+     * The default implementation goes through {@link #process(ByteBuffer)}, which costs
+     * a compact and a flip per call. Readers should override it and make process a
+     * flip/processReadMode/compact instead.
+     */
+    default ProcessStatus processReadMode(ByteBuffer bb) {
+        bb.compact();
+        try {
+            return process(bb);
+        } finally {
+            bb.flip();
+        }
+    }
+
+    T get();
+
+    void reset();
+
+}